@@ -0,0 +1,76 @@
+package ro.ilies.bogdan.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Open, high, low, close, volume and volume weighted price of the trades of a stock made in
+ * [startTimestamp, startTimestamp + intervalMillis).
+ */
+public class Bar {
+
+    private final String stockSymbol;
+    private final long startTimestamp;
+    private final long intervalMillis;
+    private final BigDecimal open;
+    private final BigDecimal high;
+    private final BigDecimal low;
+    private final BigDecimal close;
+    private final long volume;
+    private final BigDecimal volumeWeightedPrice;
+
+    public Bar(String stockSymbol, long startTimestamp, long intervalMillis, BigDecimal open, BigDecimal high,
+               BigDecimal low, BigDecimal close, long volume, BigDecimal volumeWeightedPrice) {
+        this.stockSymbol = stockSymbol;
+        this.startTimestamp = startTimestamp;
+        this.intervalMillis = intervalMillis;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.volumeWeightedPrice = volumeWeightedPrice;
+    }
+
+    public String getStockSymbol() {
+        return stockSymbol;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public BigDecimal getOpen() {
+        return open;
+    }
+
+    public BigDecimal getHigh() {
+        return high;
+    }
+
+    public BigDecimal getLow() {
+        return low;
+    }
+
+    public BigDecimal getClose() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public BigDecimal getVolumeWeightedPrice() {
+        return volumeWeightedPrice;
+    }
+
+    @Override
+    public String toString() {
+        return "Bar{stockSymbol='" + stockSymbol + "', startTimestamp=" + startTimestamp + ", open=" + open
+                + ", high=" + high + ", low=" + low + ", close=" + close + ", volume=" + volume
+                + ", volumeWeightedPrice=" + volumeWeightedPrice + "}";
+    }
+}
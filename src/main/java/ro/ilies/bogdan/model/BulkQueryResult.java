@@ -0,0 +1,80 @@
+package ro.ilies.bogdan.model;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a query for many stocks at once: for every position of the query either a value or the exception
+ * that computing it raised.
+ */
+public class BulkQueryResult {
+
+    private final String[] stockSymbols;
+    private final BigDecimal[] values;
+    private final RuntimeException[] failures;
+    private final int failureCount;
+
+    public BulkQueryResult(String[] stockSymbols, BigDecimal[] values, RuntimeException[] failures) {
+        if (stockSymbols.length != values.length || values.length != failures.length) {
+            throw new IllegalArgumentException("Symbols, values and failures must have the same length.");
+        }
+        this.stockSymbols = stockSymbols;
+        this.values = values;
+        this.failures = failures;
+        int failed = 0;
+        for (RuntimeException failure : failures) {
+            if (failure != null) {
+                failed++;
+            }
+        }
+        this.failureCount = failed;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public String getStockSymbol(int index) {
+        return stockSymbols[index];
+    }
+
+    public boolean isSuccessful(int index) {
+        return failures[index] == null;
+    }
+
+    /**
+     * Value at given position; rethrows the exception raised while computing it, if any.
+     */
+    public BigDecimal getValue(int index) {
+        if (failures[index] != null) {
+            throw failures[index];
+        }
+        return values[index];
+    }
+
+    public RuntimeException getFailure(int index) {
+        return failures[index];
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public boolean isFullySuccessful() {
+        return failureCount == 0;
+    }
+
+    /**
+     * Successful values by stock symbol, in query order.
+     */
+    public Map<String, BigDecimal> getValuesBySymbol() {
+        Map<String, BigDecimal> valuesBySymbol = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (failures[i] == null) {
+                valuesBySymbol.put(stockSymbols[i], values[i]);
+            }
+        }
+        return valuesBySymbol;
+    }
+}
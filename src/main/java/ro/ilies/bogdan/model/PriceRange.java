@@ -0,0 +1,51 @@
+package ro.ilies.bogdan.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Lowest and highest price of a set of trades.
+ */
+public class PriceRange {
+
+    private final BigDecimal low;
+    private final BigDecimal high;
+
+    public PriceRange(BigDecimal low, BigDecimal high) {
+        Objects.requireNonNull(low, "Range's low price cannot be null.");
+        Objects.requireNonNull(high, "Range's high price cannot be null.");
+        this.low = low;
+        this.high = high;
+    }
+
+    public BigDecimal getLow() {
+        return low;
+    }
+
+    public BigDecimal getHigh() {
+        return high;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PriceRange that = (PriceRange) o;
+
+        if (low.compareTo(that.low) != 0) return false;
+        return high.compareTo(that.high) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = low.stripTrailingZeros().hashCode();
+        result = 31 * result + high.stripTrailingZeros().hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceRange{low=" + low + ", high=" + high + "}";
+    }
+}
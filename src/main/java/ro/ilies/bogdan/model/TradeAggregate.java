@@ -0,0 +1,72 @@
+package ro.ilies.bogdan.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Totals of a set of trades: sum of price * quantity, sum of quantities and number of trades.
+ */
+public class TradeAggregate {
+
+    public static final TradeAggregate EMPTY = new TradeAggregate(BigDecimal.ZERO, 0, 0);
+
+    private final BigDecimal notional;
+    private final long quantity;
+    private final long count;
+
+    public TradeAggregate(BigDecimal notional, long quantity, long count) {
+        Objects.requireNonNull(notional, "Aggregate's notional cannot be null.");
+        this.notional = notional;
+        this.quantity = quantity;
+        this.count = count;
+    }
+
+    public static TradeAggregate of(Trade trade) {
+        return new TradeAggregate(trade.getPrice().multiply(BigDecimal.valueOf(trade.getSharesQuantity())),
+                trade.getSharesQuantity(), 1);
+    }
+
+    public TradeAggregate add(TradeAggregate other) {
+        return new TradeAggregate(notional.add(other.notional), quantity + other.quantity, count + other.count);
+    }
+
+    public TradeAggregate subtract(TradeAggregate other) {
+        return new TradeAggregate(notional.subtract(other.notional), quantity - other.quantity, count - other.count);
+    }
+
+    public BigDecimal getNotional() {
+        return notional;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TradeAggregate that = (TradeAggregate) o;
+
+        if (quantity != that.quantity) return false;
+        if (count != that.count) return false;
+        return notional.compareTo(that.notional) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = notional.stripTrailingZeros().hashCode();
+        result = 31 * result + (int) (quantity ^ (quantity >>> 32));
+        result = 31 * result + (int) (count ^ (count >>> 32));
+        return result;
+    }
+}
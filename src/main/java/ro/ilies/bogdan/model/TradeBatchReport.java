@@ -0,0 +1,41 @@
+package ro.ilies.bogdan.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of recording a batch of trades: how many were accepted and why the others were rejected.
+ * Failures of trade listeners are collected too, since the trades they were notified of are recorded regardless.
+ */
+public class TradeBatchReport {
+
+    private final int acceptedCount;
+    private final List<TradeRejection> rejections;
+    private final List<RuntimeException> listenerFailures;
+
+    public TradeBatchReport(int acceptedCount, List<TradeRejection> rejections) {
+        this(acceptedCount, rejections, Collections.emptyList());
+    }
+
+    public TradeBatchReport(int acceptedCount, List<TradeRejection> rejections, List<RuntimeException> listenerFailures) {
+        this.acceptedCount = acceptedCount;
+        this.rejections = Collections.unmodifiableList(rejections);
+        this.listenerFailures = Collections.unmodifiableList(listenerFailures);
+    }
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public List<TradeRejection> getRejections() {
+        return rejections;
+    }
+
+    public List<RuntimeException> getListenerFailures() {
+        return listenerFailures;
+    }
+
+    public boolean isFullyAccepted() {
+        return rejections.isEmpty();
+    }
+}
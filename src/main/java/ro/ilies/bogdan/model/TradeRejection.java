@@ -0,0 +1,34 @@
+package ro.ilies.bogdan.model;
+
+/**
+ * A trade of a batch that was not recorded, with its position in the batch and the reason.
+ */
+public class TradeRejection {
+
+    private final int index;
+    private final Trade trade;
+    private final String reason;
+
+    public TradeRejection(int index, Trade trade, String reason) {
+        this.index = index;
+        this.trade = trade;
+        this.reason = reason;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Trade getTrade() {
+        return trade;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "TradeRejection{index=" + index + ", reason='" + reason + "'}";
+    }
+}
@@ -0,0 +1,256 @@
+package ro.ilies.bogdan.repository.snapshot;
+
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+import ro.ilies.bogdan.repository.stock.StockEntityManager;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
+import ro.ilies.bogdan.repository.trade.TradeEntityManager;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * Writes the stocks and trades of a pair of repositories to a compact binary snapshot and loads them back, so a
+ * restart does not replay every registration and trade through the service.
+ *
+ * Trades are written one symbol at a time in timestamp order, with timestamps as deltas and numbers as variable
+ * length integers, read through the repository's cursor so that each symbol is written as of one instant without
+ * copying its trades. Restoring stores them in large batches, skipping the service's validation, so it must go into
+ * empty repositories before a service is built on top of them.
+ */
+public final class MarketSnapshot {
+
+    private static final int MAGIC = 0x4d4b5453;
+    private static final int VERSION = 1;
+    private static final int RESTORE_BATCH_SIZE = 1 << 16;
+
+    private MarketSnapshot() {
+    }
+
+    public static SnapshotReport write(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager,
+                                       Path file) {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            return write(stockEntityManager, tradeEntityManager, output);
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot write market snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static SnapshotReport write(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager,
+                                       OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(output, 1 << 16));
+        DataOutputStream data = new DataOutputStream(counter);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        List<Stock> stocks = stockEntityManager.retrieveAll();
+        writeVarLong(data, stocks.size());
+        for (Stock stock : stocks) {
+            data.writeUTF(stock.getStockSymbol());
+            data.writeByte(stock.getType().ordinal());
+            writeDecimal(data, stock.getLastDividend());
+            data.writeBoolean(stock.getFixedDividendInPercent() != null);
+            if (stock.getFixedDividendInPercent() != null) {
+                writeDecimal(data, stock.getFixedDividendInPercent());
+            }
+            writeDecimal(data, stock.getParValue());
+        }
+
+        long tradeCount = 0;
+        SymbolDictionary symbolDictionary = tradeEntityManager.getSymbolDictionary();
+        for (int symbolId = 0; symbolId < symbolDictionary.size(); symbolId++) {
+            Spliterator<Trade> trades = tradeEntityManager.spliteratorAfter(symbolId, Long.MIN_VALUE);
+            long size = trades.getExactSizeIfKnown();
+            if (size == 0) {
+                continue;
+            }
+            data.writeBoolean(true);
+            data.writeUTF(symbolDictionary.symbolOf(symbolId));
+            writeVarLong(data, size);
+            long previousTimestamp = 0;
+            for (Iterator<Trade> iterator = Spliterators.iterator(trades); iterator.hasNext(); ) {
+                Trade trade = iterator.next();
+                writeVarLong(data, zigZag(trade.getTimestamp() - previousTimestamp));
+                previousTimestamp = trade.getTimestamp();
+                writeVarLong(data, trade.getSharesQuantity() & 0xffffffffL);
+                data.writeByte(trade.getType().ordinal());
+                writeDecimal(data, trade.getPrice());
+            }
+            tradeCount += size;
+        }
+        data.writeBoolean(false);
+        data.flush();
+        return new SnapshotReport(stocks.size(), tradeCount, counter.count, elapsedMillisSince(start));
+    }
+
+    public static SnapshotReport restore(Path file, StockEntityManager stockEntityManager,
+                                         TradeEntityManager tradeEntityManager) {
+        try (InputStream input = Files.newInputStream(file)) {
+            return restore(input, stockEntityManager, tradeEntityManager);
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot read market snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static SnapshotReport restore(InputStream input, StockEntityManager stockEntityManager,
+                                         TradeEntityManager tradeEntityManager) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(input, 1 << 16));
+        DataInputStream data = new DataInputStream(counter);
+        if (data.readInt() != MAGIC) {
+            throw new RepositoryException("Not a market snapshot.");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new RepositoryException("Unsupported market snapshot version: " + version);
+        }
+
+        long stockCount = readVarLong(data);
+        Stock.Type[] stockTypes = Stock.Type.values();
+        for (long i = 0; i < stockCount; i++) {
+            String stockSymbol = data.readUTF();
+            Stock.Type type = stockTypes[data.readUnsignedByte()];
+            BigDecimal lastDividend = readDecimal(data);
+            BigDecimal fixedDividendInPercent = data.readBoolean() ? readDecimal(data) : null;
+            stockEntityManager.store(new Stock(stockSymbol, type, lastDividend, fixedDividendInPercent, readDecimal(data)));
+        }
+
+        long tradeCount = 0;
+        Trade.Type[] tradeTypes = Trade.Type.values();
+        Trade[] batch = new Trade[RESTORE_BATCH_SIZE];
+        while (data.readBoolean()) {
+            String stockSymbol = data.readUTF();
+            long count = readVarLong(data);
+            long timestamp = 0;
+            int batchSize = 0;
+            for (long i = 0; i < count; i++) {
+                timestamp += unZigZag(readVarLong(data));
+                int sharesQuantity = (int) readVarLong(data);
+                Trade.Type type = tradeTypes[data.readUnsignedByte()];
+                batch[batchSize++] = new Trade(stockSymbol, timestamp, sharesQuantity, type, readDecimal(data));
+                if (batchSize == batch.length) {
+                    tradeEntityManager.storeAll(Arrays.asList(batch));
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                tradeEntityManager.storeAll(Arrays.asList(batch).subList(0, batchSize));
+            }
+            tradeCount += count;
+        }
+        return new SnapshotReport(stockCount, tradeCount, counter.count, elapsedMillisSince(start));
+    }
+
+    // scale, then the unscaled value as a variable length integer or, when it does not fit a long, as bytes
+    private static void writeDecimal(DataOutput data, BigDecimal value) throws IOException {
+        BigInteger unscaled = value.unscaledValue();
+        boolean fitsLong = unscaled.bitLength() < Long.SIZE;
+        writeVarLong(data, zigZag(value.scale()) << 1 | (fitsLong ? 0 : 1));
+        if (fitsLong) {
+            writeVarLong(data, zigZag(unscaled.longValue()));
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            writeVarLong(data, bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInput data) throws IOException {
+        long header = readVarLong(data);
+        int scale = (int) unZigZag(header >>> 1);
+        if ((header & 1) == 0) {
+            return BigDecimal.valueOf(unZigZag(readVarLong(data)), scale);
+        }
+        byte[] bytes = new byte[(int) readVarLong(data)];
+        data.readFully(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutput data, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            data.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new RepositoryException("Corrupted market snapshot.");
+    }
+
+    private static long elapsedMillisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
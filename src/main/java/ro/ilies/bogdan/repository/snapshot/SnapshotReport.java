@@ -0,0 +1,41 @@
+package ro.ilies.bogdan.repository.snapshot;
+
+/**
+ * What a snapshot holds, its size and how long it took to write or restore.
+ */
+public class SnapshotReport {
+
+    private final long stockCount;
+    private final long tradeCount;
+    private final long sizeBytes;
+    private final long elapsedMillis;
+
+    public SnapshotReport(long stockCount, long tradeCount, long sizeBytes, long elapsedMillis) {
+        this.stockCount = stockCount;
+        this.tradeCount = tradeCount;
+        this.sizeBytes = sizeBytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getStockCount() {
+        return stockCount;
+    }
+
+    public long getTradeCount() {
+        return tradeCount;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotReport{stockCount=" + stockCount + ", tradeCount=" + tradeCount + ", sizeBytes=" + sizeBytes
+                + ", elapsedMillis=" + elapsedMillis + "}";
+    }
+}
@@ -1,6 +1,7 @@
 package ro.ilies.bogdan.repository.stock;
 
 import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,5 +15,12 @@ public interface StockEntityManager {
 
     Optional<Stock> retrieve(String stockSymbol);
 
+    Optional<Stock> retrieve(int symbolId);
+
     List<Stock> retrieveAll();
+
+    /**
+     * Dictionary that assigns ids to the symbols of stored stocks.
+     */
+    SymbolDictionary getSymbolDictionary();
 }
@@ -3,43 +3,93 @@ package ro.ilies.bogdan.repository.stock.impl;
 import ro.ilies.bogdan.model.Stock;
 import ro.ilies.bogdan.repository.stock.StockEntityManager;
 import ro.ilies.bogdan.repository.exception.AlreadyExistsException;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by bogdan-ilies on 24.02.2018.
+ *
+ * Registered stocks are published as an immutable snapshot, so lookups and {@link #retrieveAll()} take no lock and
+ * allocate nothing. Each registration copies the snapshot, which suits registries that rarely change.
+ * The snapshot also indexes stocks by {@link SymbolDictionary} id.
  */
 public class InMemoryStockEntityManager implements StockEntityManager {
 
-    private Map<String, Stock> stocks;
+    private final AtomicReference<Registry> registry;
+    private final SymbolDictionary symbolDictionary;
 
     public InMemoryStockEntityManager() {
-        stocks = new HashMap<>();
+        this(new SymbolDictionary());
+    }
+
+    public InMemoryStockEntityManager(SymbolDictionary symbolDictionary) {
+        this.registry = new AtomicReference<>(Registry.EMPTY);
+        this.symbolDictionary = symbolDictionary;
     }
 
     @Override
     public void store(Stock stock) {
-        throwExceptionIfStockAlreadyExists(stock);
-        stocks.put(stock.getStockSymbol(), stock);
+        Registry current;
+        do {
+            current = registry.get();
+            throwExceptionIfStockAlreadyExists(current, stock);
+        } while (!registry.compareAndSet(current, current.with(stock, symbolDictionary.idOf(stock.getStockSymbol()))));
     }
 
-    private void throwExceptionIfStockAlreadyExists(Stock stock) {
-        if (stocks.containsKey(stock.getStockSymbol())) {
+    private void throwExceptionIfStockAlreadyExists(Registry registry, Stock stock) {
+        if (registry.stocksBySymbol.containsKey(stock.getStockSymbol())) {
             throw new AlreadyExistsException("A stock with same symbol already exists.");
         }
     }
 
     @Override
     public Optional<Stock> retrieve(String stockSymbol) {
-        return Optional.ofNullable(stocks.get(stockSymbol));
+        return Optional.ofNullable(registry.get().stocksBySymbol.get(stockSymbol));
+    }
+
+    @Override
+    public Optional<Stock> retrieve(int symbolId) {
+        Stock[] stocksById = registry.get().stocksById;
+        return symbolId >= 0 && symbolId < stocksById.length ? Optional.ofNullable(stocksById[symbolId]) : Optional.empty();
     }
 
+    /**
+     * @return an unmodifiable list, which is not affected by later registrations
+     */
     @Override
     public List<Stock> retrieveAll() {
-        return stocks.values().stream().collect(Collectors.toList());
+        return registry.get().stocks;
+    }
+
+    @Override
+    public SymbolDictionary getSymbolDictionary() {
+        return symbolDictionary;
+    }
+
+    private static final class Registry {
+        private static final Registry EMPTY = new Registry(Collections.emptyMap(), new Stock[0], new Stock[0]);
+
+        private final Map<String, Stock> stocksBySymbol;
+        private final List<Stock> stocks;
+        // sparse when the dictionary also holds symbols of trades without a registered stock
+        private final Stock[] stocksById;
+
+        private Registry(Map<String, Stock> stocksBySymbol, Stock[] stocks, Stock[] stocksById) {
+            this.stocksBySymbol = stocksBySymbol;
+            this.stocks = Collections.unmodifiableList(Arrays.asList(stocks));
+            this.stocksById = stocksById;
+        }
+
+        private Registry with(Stock stock, int symbolId) {
+            Map<String, Stock> stocksBySymbol = new HashMap<>(this.stocksBySymbol);
+            stocksBySymbol.put(stock.getStockSymbol(), stock);
+            Stock[] stocks = this.stocks.toArray(new Stock[this.stocks.size() + 1]);
+            stocks[stocks.length - 1] = stock;
+            Stock[] stocksById = Arrays.copyOf(this.stocksById, Math.max(this.stocksById.length, symbolId + 1));
+            stocksById[symbolId] = stock;
+            return new Registry(stocksBySymbol, stocks, stocksById);
+        }
     }
 }
@@ -0,0 +1,65 @@
+package ro.ilies.bogdan.repository.symbol;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns every stock symbol a dense int id, starting from 0, so that repositories can keep per-symbol data in
+ * arrays and callers holding an id skip hashing and comparing the symbol. Ids are never reassigned.
+ *
+ * Repositories that share a dictionary agree on the ids.
+ */
+public class SymbolDictionary {
+
+    public static final int NO_ID = -1;
+
+    private final ConcurrentMap<String, Integer> idsBySymbol = new ConcurrentHashMap<>();
+    // a slot is written before its id is published in idsBySymbol, so anyone holding an id sees the slot
+    private volatile String[] symbolsById = new String[16];
+    private volatile int size;
+
+    /**
+     * Id of given symbol, assigned on first use.
+     */
+    public int idOf(String stockSymbol) {
+        Integer id = idsBySymbol.get(stockSymbol);
+        return id != null ? id : assign(stockSymbol);
+    }
+
+    private synchronized int assign(String stockSymbol) {
+        Integer id = idsBySymbol.get(stockSymbol);
+        if (id != null) {
+            return id;
+        }
+        int newId = size;
+        String[] symbols = symbolsById;
+        if (newId == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length * 2);
+        }
+        symbols[newId] = stockSymbol;
+        symbolsById = symbols;
+        size = newId + 1;
+        idsBySymbol.put(stockSymbol, newId);
+        return newId;
+    }
+
+    /**
+     * Id of given symbol, or {@link #NO_ID} if it was never used.
+     */
+    public int lookup(String stockSymbol) {
+        Integer id = idsBySymbol.get(stockSymbol);
+        return id != null ? id : NO_ID;
+    }
+
+    public String symbolOf(int symbolId) {
+        if (symbolId < 0 || symbolId >= size) {
+            throw new IllegalArgumentException("Unknown symbol id: " + symbolId);
+        }
+        return symbolsById[symbolId];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -1,8 +1,16 @@
 package ro.ilies.bogdan.repository.trade;
 
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by bogdan-ilies on 24.02.2018.
@@ -10,5 +18,90 @@ import java.util.List;
 public interface TradeEntityManager {
     void store(Trade trade);
 
+    /**
+     * Stores several trades at once. Implementations take each symbol's lock once per run of trades for that symbol,
+     * so callers should group the trades by symbol. Each run is stored all or none; when one is refused, the runs
+     * before it stay stored and the ones after it are not attempted.
+     */
+    default void storeAll(Collection<Trade> trades) {
+        trades.forEach(this::store);
+    }
+
     List<Trade> retrieveAfter(String stockSymbol, long timestamp);
+
+    /**
+     * Cursor over the trades made at or after given timestamp, in timestamp order, splittable for parallel streams.
+     *
+     * It is a snapshot: it holds exactly the trades whose {@code store} completed before it was opened, and trades
+     * stored or evicted afterwards never show up in it nor disappear from it. It knows its exact size. Implementations
+     * that can, traverse their storage lazily instead of copying the trades into a list first.
+     */
+    default Spliterator<Trade> spliteratorAfter(String stockSymbol, long timestamp) {
+        return retrieveAfter(stockSymbol, timestamp).spliterator();
+    }
+
+    /**
+     * Cursor over the trades made in [from, to), with the same guarantees as {@link #spliteratorAfter(String, long)}.
+     */
+    default Spliterator<Trade> spliteratorBetween(String stockSymbol, long from, long to) {
+        return retrieveBetween(stockSymbol, from, to).spliterator();
+    }
+
+    default Stream<Trade> streamAfter(String stockSymbol, long timestamp) {
+        return StreamSupport.stream(spliteratorAfter(stockSymbol, timestamp), false);
+    }
+
+    default Stream<Trade> streamBetween(String stockSymbol, long from, long to) {
+        return StreamSupport.stream(spliteratorBetween(stockSymbol, from, to), false);
+    }
+
+    /**
+     * Totals of the trades made at or after given timestamp, without materializing them.
+     */
+    TradeAggregate aggregateAfter(String stockSymbol, long timestamp);
+
+    /**
+     * Totals of the trades of given side made at or after given timestamp.
+     */
+    TradeAggregate aggregateAfter(String stockSymbol, long timestamp, Trade.Type side);
+
+    /**
+     * Trades made in [from, to), in timestamp order.
+     */
+    List<Trade> retrieveBetween(String stockSymbol, long from, long to);
+
+    /**
+     * Totals of the trades made in [from, to), without materializing them.
+     */
+    TradeAggregate aggregateBetween(String stockSymbol, long from, long to);
+
+    /**
+     * Lowest and highest price of the trades made in [from, to), if there was any, without materializing them.
+     */
+    Optional<PriceRange> priceRangeBetween(String stockSymbol, long from, long to);
+
+    /**
+     * Dictionary that assigns ids to the symbols of stored trades.
+     */
+    SymbolDictionary getSymbolDictionary();
+
+    default List<Trade> retrieveAfter(int symbolId, long timestamp) {
+        return retrieveAfter(getSymbolDictionary().symbolOf(symbolId), timestamp);
+    }
+
+    default Spliterator<Trade> spliteratorAfter(int symbolId, long timestamp) {
+        return spliteratorAfter(getSymbolDictionary().symbolOf(symbolId), timestamp);
+    }
+
+    default TradeAggregate aggregateAfter(int symbolId, long timestamp) {
+        return aggregateAfter(getSymbolDictionary().symbolOf(symbolId), timestamp);
+    }
+
+    default TradeAggregate aggregateAfter(int symbolId, long timestamp, Trade.Type side) {
+        return aggregateAfter(getSymbolDictionary().symbolOf(symbolId), timestamp, side);
+    }
+
+    default TradeAggregate aggregateBetween(int symbolId, long from, long to) {
+        return aggregateBetween(getSymbolDictionary().symbolOf(symbolId), from, to);
+    }
 }
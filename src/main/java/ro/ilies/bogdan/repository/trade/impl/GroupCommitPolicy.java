@@ -0,0 +1,46 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+/**
+ * How {@link WriteAheadLogTradeEntityManager} groups trades into commits. A commit takes the trades waiting when it
+ * starts and those arriving within {@link #getMaxDelayMicros()}, up to {@link #getMaxBatchSize()} trades, and
+ * forces them to disk at once. A longer delay lets more concurrent writers share an fsync, at the cost of latency.
+ */
+public final class GroupCommitPolicy {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 1000;
+
+    private final int maxBatchSize;
+    private final long maxDelayMicros;
+
+    private GroupCommitPolicy(int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Commit batch size must be greater than 0.");
+        }
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Commit delay cannot be negative.");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    public static GroupCommitPolicy defaults() {
+        return new GroupCommitPolicy(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS);
+    }
+
+    public GroupCommitPolicy withMaxBatchSize(int maxBatchSize) {
+        return new GroupCommitPolicy(maxBatchSize, maxDelayMicros);
+    }
+
+    public GroupCommitPolicy withMaxDelayMicros(long maxDelayMicros) {
+        return new GroupCommitPolicy(maxBatchSize, maxDelayMicros);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelayMicros() {
+        return maxDelayMicros;
+    }
+}
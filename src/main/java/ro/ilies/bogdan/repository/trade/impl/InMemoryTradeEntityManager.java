@@ -1,38 +1,265 @@
 package ro.ilies.bogdan.repository.trade.impl;
 
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 import ro.ilies.bogdan.repository.trade.TradeEntityManager;
 
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
 
 /**
  * Created by bogdan-ilies on 24.02.2018.
+ *
+ * Thread safe: each symbol has its own lock, so trades for different stocks are stored in parallel
+ * and readers of a symbol only wait for writers of the same symbol. Histories are kept in an array indexed by
+ * {@link SymbolDictionary} id, so queries by id do not hash the symbol.
+ *
+ * Cursors are lazy snapshots over the segment arrays: opening one costs the read lock and an allocation per covered
+ * segment, never a copy of the trades.
+ *
+ * Unless the {@link TradeRetentionPolicy} is unlimited, a background thread evicts old trades; {@link #close()} stops it.
  */
-public class InMemoryTradeEntityManager implements TradeEntityManager {
+public class InMemoryTradeEntityManager implements TradeEntityManager, Closeable {
 
-    private final Map<String, TreeMap<Long, Trade>> tradesByStockSymbol;
+    private final SymbolSlots<TradeHistory> tradesBySymbolId;
+    private final TradeRetentionPolicy retentionPolicy;
+    private final AtomicLong evictedTrades = new AtomicLong();
+    private final ScheduledExecutorService evictionExecutor;
 
     public InMemoryTradeEntityManager() {
-        this.tradesByStockSymbol = new TreeMap<>();
+        this(TradeRetentionPolicy.unlimited());
+    }
+
+    public InMemoryTradeEntityManager(TradeRetentionPolicy retentionPolicy) {
+        this(new SymbolDictionary(), retentionPolicy);
+    }
+
+    public InMemoryTradeEntityManager(SymbolDictionary symbolDictionary) {
+        this(symbolDictionary, TradeRetentionPolicy.unlimited());
+    }
+
+    public InMemoryTradeEntityManager(SymbolDictionary symbolDictionary, TradeRetentionPolicy retentionPolicy) {
+        this.tradesBySymbolId = new SymbolSlots<>(symbolDictionary);
+        this.retentionPolicy = retentionPolicy;
+        if (retentionPolicy.isUnlimited()) {
+            this.evictionExecutor = null;
+        } else {
+            this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trade-eviction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictionExecutor.scheduleWithFixedDelay(this::evict, retentionPolicy.getEvictionIntervalMillis(),
+                    retentionPolicy.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void store(Trade trade) {
-        TreeMap<Long, Trade> trades = tradesByStockSymbol.get(trade.getStockSymbol());
+        tradesFor(trade.getStockSymbol()).add(trade);
+    }
+
+    @Override
+    public void storeAll(Collection<Trade> trades) {
+        TradeBatches.forEachSymbolRun(trades, (stockSymbol, batch, from, to) -> tradesFor(stockSymbol).addAll(batch, from, to));
+    }
+
+    private TradeHistory tradesFor(String stockSymbol) {
+        return tradesBySymbolId.getOrCreate(stockSymbol, symbol -> new TradeHistory(retentionPolicy.getBucketMillis()));
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(String stockSymbol, long timestamp) {
+        return after(tradesBySymbolId.get(stockSymbol), timestamp);
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(int symbolId, long timestamp) {
+        return after(tradesBySymbolId.get(symbolId), timestamp);
+    }
+
+    private static List<Trade> after(TradeHistory trades, long timestamp) {
         if (trades == null) {
-            trades = new TreeMap<>();
-            tradesByStockSymbol.put(trade.getStockSymbol(), trades);
+            return Collections.emptyList();
         }
-        trades.put(trade.getTimestamp(), trade);
+        return trades.after(timestamp);
     }
 
     @Override
-    public List<Trade> retrieveAfter(String stockSymbol, long timestamp) {
-        TreeMap<Long, Trade> trades = tradesByStockSymbol.get(stockSymbol);
+    public Spliterator<Trade> spliteratorAfter(String stockSymbol, long timestamp) {
+        return cursorAfter(tradesBySymbolId.get(stockSymbol), timestamp);
+    }
+
+    @Override
+    public Spliterator<Trade> spliteratorAfter(int symbolId, long timestamp) {
+        return cursorAfter(tradesBySymbolId.get(symbolId), timestamp);
+    }
+
+    private static Spliterator<Trade> cursorAfter(TradeHistory trades, long timestamp) {
+        if (trades == null) {
+            return Spliterators.emptySpliterator();
+        }
+        return trades.cursorAfter(timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp) {
+        return aggregateAfter(tradesBySymbolId.get(stockSymbol), timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp) {
+        return aggregateAfter(tradesBySymbolId.get(symbolId), timestamp);
+    }
+
+    private static TradeAggregate aggregateAfter(TradeHistory trades, long timestamp) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateAfter(timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        return aggregateAfter(tradesBySymbolId.get(stockSymbol), timestamp, side);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp, Trade.Type side) {
+        return aggregateAfter(tradesBySymbolId.get(symbolId), timestamp, side);
+    }
+
+    private static TradeAggregate aggregateAfter(TradeHistory trades, long timestamp, Trade.Type side) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateAfter(timestamp, side);
+    }
+
+    @Override
+    public List<Trade> retrieveBetween(String stockSymbol, long from, long to) {
+        TradeHistory trades = tradesBySymbolId.get(stockSymbol);
         if (trades == null) {
             return Collections.emptyList();
         }
-        return new ArrayList<>(trades.tailMap(timestamp)
-                .values());
+        return trades.between(from, to);
+    }
+
+    @Override
+    public Spliterator<Trade> spliteratorBetween(String stockSymbol, long from, long to) {
+        TradeHistory trades = tradesBySymbolId.get(stockSymbol);
+        if (trades == null) {
+            return Spliterators.emptySpliterator();
+        }
+        return trades.cursorBetween(from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(String stockSymbol, long from, long to) {
+        return aggregateBetween(tradesBySymbolId.get(stockSymbol), from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(int symbolId, long from, long to) {
+        return aggregateBetween(tradesBySymbolId.get(symbolId), from, to);
+    }
+
+    private static TradeAggregate aggregateBetween(TradeHistory trades, long from, long to) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateBetween(from, to);
+    }
+
+    @Override
+    public Optional<PriceRange> priceRangeBetween(String stockSymbol, long from, long to) {
+        TradeHistory trades = tradesBySymbolId.get(stockSymbol);
+        if (trades == null) {
+            return Optional.empty();
+        }
+        return trades.priceRangeBetween(from, to);
+    }
+
+    @Override
+    public SymbolDictionary getSymbolDictionary() {
+        return tradesBySymbolId.symbolDictionary();
+    }
+
+    /**
+     * Applies the retention policy once.
+     *
+     * @return number of trades evicted
+     */
+    public long evict() {
+        long evicted = 0;
+        if (retentionPolicy.getMaxAgeMillis() != Long.MAX_VALUE) {
+            long oldestKept = System.currentTimeMillis() - retentionPolicy.getMaxAgeMillis();
+            evicted += sum(trades -> trades.evictBefore(oldestKept));
+        }
+        if (retentionPolicy.getMaxTradesPerSymbol() != Long.MAX_VALUE) {
+            evicted += sum(trades -> trades.evictAbove(retentionPolicy.getMaxTradesPerSymbol()));
+        }
+        if (retentionPolicy.getMaxMemoryBytes() != Long.MAX_VALUE) {
+            evicted += evictToTotalSize(retentionPolicy.getMaxTotalTrades());
+        }
+        evictedTrades.addAndGet(evicted);
+        return evicted;
+    }
+
+    // drops the oldest buckets across all stocks until the total number of trades fits
+    private long evictToTotalSize(long maximumTotalSize) {
+        long evicted = 0;
+        long totalSize = size();
+        while (totalSize > maximumTotalSize) {
+            TradeHistory oldest = oldestEvictable();
+            if (oldest == null) {
+                break;
+            }
+            int evictedFromOldest = oldest.evictOldest();
+            evicted += evictedFromOldest;
+            totalSize -= evictedFromOldest;
+        }
+        return evicted;
+    }
+
+    private TradeHistory oldestEvictable() {
+        TradeHistory[] oldest = new TradeHistory[1];
+        long[] oldestBucketStart = {Long.MAX_VALUE};
+        tradesBySymbolId.forEach(trades -> {
+            long bucketStart = trades.oldestEvictableBucketStart();
+            if (bucketStart < oldestBucketStart[0]) {
+                oldest[0] = trades;
+                oldestBucketStart[0] = bucketStart;
+            }
+        });
+        return oldest[0];
+    }
+
+    private long sum(ToLongFunction<TradeHistory> perSymbol) {
+        long[] sum = new long[1];
+        tradesBySymbolId.forEach(trades -> sum[0] += perSymbol.applyAsLong(trades));
+        return sum[0];
+    }
+
+    public long size() {
+        return sum(TradeHistory::size);
+    }
+
+    public long getEvictedTradeCount() {
+        return evictedTrades.get();
+    }
+
+    @Override
+    public void close() {
+        if (evictionExecutor != null) {
+            evictionExecutor.shutdownNow();
+        }
     }
 }
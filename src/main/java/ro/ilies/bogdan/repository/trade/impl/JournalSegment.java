@@ -0,0 +1,175 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of fixed size records.
+ *
+ * Header: magic (int), record capacity (int), record count (long).
+ * Record: timestamp (long), price unscaled value (long), quantity (int), price scale (byte), side (byte), 2 bytes padding.
+ *
+ * The record count is written after the record itself, so a record is only visible once fully written.
+ */
+class JournalSegment {
+
+    static final int RECORD_SIZE = 24;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x54524431;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int PRICE_MANTISSA_OFFSET = 8;
+    private static final int QUANTITY_OFFSET = 16;
+    private static final int PRICE_SCALE_OFFSET = 20;
+    private static final int SIDE_OFFSET = 21;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int size;
+
+    private JournalSegment(FileChannel channel, MappedByteBuffer buffer, int capacity, int size) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.size = size;
+    }
+
+    static JournalSegment create(Path file, int capacity) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(COUNT_OFFSET, 0);
+            return new JournalSegment(channel, buffer, capacity, 0);
+        } catch (IOException e) {
+            if (channel != null) {
+                closeQuietly(channel);
+                // the file was created just now, do not leave an empty segment behind
+                deleteQuietly(file);
+            }
+            throw new RepositoryException("Cannot create journal segment " + file + ": " + e.getMessage());
+        }
+    }
+
+    static JournalSegment open(Path file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                channel.close();
+                throw new RepositoryException("Not a journal segment: " + file);
+            }
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            long size = buffer.getLong(COUNT_OFFSET);
+            if (size < 0 || size > capacity || channel.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                channel.close();
+                throw new RepositoryException("Corrupted journal segment: " + file);
+            }
+            return new JournalSegment(channel, buffer, capacity, (int) size);
+        } catch (IOException e) {
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+            throw new RepositoryException("Cannot open journal segment " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the failure that made the segment unusable is reported instead
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // the failure that made the segment unusable is reported instead
+        }
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void append(long timestamp, long priceMantissa, int priceScale, int quantity, boolean sell) {
+        int offset = offset(size);
+        buffer.putLong(offset, timestamp);
+        buffer.putLong(offset + PRICE_MANTISSA_OFFSET, priceMantissa);
+        buffer.putInt(offset + QUANTITY_OFFSET, quantity);
+        buffer.put(offset + PRICE_SCALE_OFFSET, (byte) priceScale);
+        buffer.put(offset + SIDE_OFFSET, (byte) (sell ? 1 : 0));
+        size++;
+        buffer.putLong(COUNT_OFFSET, size);
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    long timestamp(int index) {
+        return buffer.getLong(offset(index));
+    }
+
+    long priceMantissa(int index) {
+        return buffer.getLong(offset(index) + PRICE_MANTISSA_OFFSET);
+    }
+
+    int priceScale(int index) {
+        return buffer.get(offset(index) + PRICE_SCALE_OFFSET);
+    }
+
+    int quantity(int index) {
+        return buffer.getInt(offset(index) + QUANTITY_OFFSET);
+    }
+
+    boolean isSell(int index) {
+        return buffer.get(offset(index) + SIDE_OFFSET) != 0;
+    }
+
+    // index of the first record made at or after given timestamp
+    int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot close journal segment: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
+import ro.ilies.bogdan.repository.trade.TradeEntityManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps trades off-heap in append-only, memory-mapped segment files, one directory per stock symbol.
+ *
+ * Opening an existing directory only maps the segments, so trades journaled before a restart are available
+ * immediately. Records reach the page cache as soon as they are stored; {@link #flush()} forces them to disk.
+ * Trades of a symbol must be stored in timestamp order and prices must have an unscaled value that fits in a long.
+ */
+public class MappedTradeEntityManager implements TradeEntityManager, Closeable {
+
+    public static final int DEFAULT_SEGMENT_CAPACITY = 1 << 20;
+    private static final int MAX_SEGMENT_CAPACITY = (Integer.MAX_VALUE - 16) / JournalSegment.RECORD_SIZE;
+
+    private final Path directory;
+    private final int segmentCapacity;
+    private final SymbolSlots<TradeJournal> tradesBySymbolId;
+
+    public MappedTradeEntityManager(Path directory) {
+        this(directory, DEFAULT_SEGMENT_CAPACITY);
+    }
+
+    public MappedTradeEntityManager(Path directory, int segmentCapacity) {
+        this(directory, segmentCapacity, new SymbolDictionary());
+    }
+
+    public MappedTradeEntityManager(Path directory, int segmentCapacity, SymbolDictionary symbolDictionary) {
+        if (segmentCapacity <= 0 || segmentCapacity > MAX_SEGMENT_CAPACITY) {
+            throw new IllegalArgumentException("Segment capacity must be between 1 and " + MAX_SEGMENT_CAPACITY + ".");
+        }
+        this.directory = directory;
+        this.segmentCapacity = segmentCapacity;
+        this.tradesBySymbolId = new SymbolSlots<>(symbolDictionary);
+        recover();
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> symbolDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path symbolDirectory : symbolDirectories) {
+                    tradesBySymbolId.getOrCreate(decode(symbolDirectory.getFileName().toString()),
+                            stockSymbol -> TradeJournal.open(stockSymbol, symbolDirectory, segmentCapacity));
+                }
+            }
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot open trade journal " + directory + ": " + e.getMessage());
+        }
+    }
+
+    // symbols are hex encoded so that any symbol makes a valid directory name
+    private static String encode(String stockSymbol) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : stockSymbol.getBytes(StandardCharsets.UTF_8)) {
+            encoded.append(String.format("%02x", b));
+        }
+        return encoded.toString();
+    }
+
+    private static String decode(String directoryName) {
+        byte[] bytes = new byte[directoryName.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(directoryName.substring(2 * i, 2 * i + 2), 16);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void store(Trade trade) {
+        tradesFor(trade.getStockSymbol()).add(trade);
+    }
+
+    @Override
+    public void storeAll(Collection<Trade> trades) {
+        TradeBatches.forEachSymbolRun(trades, (stockSymbol, batch, from, to) -> tradesFor(stockSymbol).addAll(batch, from, to));
+    }
+
+    private TradeJournal tradesFor(String stockSymbol) {
+        return tradesBySymbolId.getOrCreate(stockSymbol,
+                symbol -> TradeJournal.create(symbol, directory.resolve(encode(symbol)), segmentCapacity));
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(String stockSymbol, long timestamp) {
+        return after(tradesBySymbolId.get(stockSymbol), timestamp);
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(int symbolId, long timestamp) {
+        return after(tradesBySymbolId.get(symbolId), timestamp);
+    }
+
+    private static List<Trade> after(TradeJournal trades, long timestamp) {
+        if (trades == null) {
+            return Collections.emptyList();
+        }
+        return trades.after(timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp) {
+        return aggregateAfter(tradesBySymbolId.get(stockSymbol), timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp) {
+        return aggregateAfter(tradesBySymbolId.get(symbolId), timestamp);
+    }
+
+    private static TradeAggregate aggregateAfter(TradeJournal trades, long timestamp) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateAfter(timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        return aggregateAfter(tradesBySymbolId.get(stockSymbol), timestamp, side);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp, Trade.Type side) {
+        return aggregateAfter(tradesBySymbolId.get(symbolId), timestamp, side);
+    }
+
+    private static TradeAggregate aggregateAfter(TradeJournal trades, long timestamp, Trade.Type side) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateAfter(timestamp, side);
+    }
+
+    @Override
+    public List<Trade> retrieveBetween(String stockSymbol, long from, long to) {
+        TradeJournal trades = tradesBySymbolId.get(stockSymbol);
+        if (trades == null) {
+            return Collections.emptyList();
+        }
+        return trades.between(from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(String stockSymbol, long from, long to) {
+        return aggregateBetween(tradesBySymbolId.get(stockSymbol), from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(int symbolId, long from, long to) {
+        return aggregateBetween(tradesBySymbolId.get(symbolId), from, to);
+    }
+
+    private static TradeAggregate aggregateBetween(TradeJournal trades, long from, long to) {
+        if (trades == null) {
+            return TradeAggregate.EMPTY;
+        }
+        return trades.aggregateBetween(from, to);
+    }
+
+    @Override
+    public Optional<PriceRange> priceRangeBetween(String stockSymbol, long from, long to) {
+        TradeJournal trades = tradesBySymbolId.get(stockSymbol);
+        if (trades == null) {
+            return Optional.empty();
+        }
+        return trades.priceRangeBetween(from, to);
+    }
+
+    @Override
+    public SymbolDictionary getSymbolDictionary() {
+        return tradesBySymbolId.symbolDictionary();
+    }
+
+    public void flush() {
+        tradesBySymbolId.forEach(TradeJournal::flush);
+    }
+
+    @Override
+    public void close() {
+        tradesBySymbolId.forEach(TradeJournal::close);
+        tradesBySymbolId.clear();
+    }
+}
@@ -0,0 +1,45 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Sums price * quantity for prices given as unscaled value and scale, using long arithmetic at the
+ * highest scale seen so far and switching to BigDecimal only once that overflows.
+ */
+class NotionalAccumulator {
+
+    private long sum;
+    private int scale;
+    private BigDecimal overflowedSum;
+
+    void add(long priceMantissa, int priceScale, int quantity) {
+        if (overflowedSum == null) {
+            try {
+                long term = Math.multiplyExact(priceMantissa, (long) quantity);
+                if (priceScale > scale) {
+                    sum = rescale(sum, priceScale - scale);
+                    scale = priceScale;
+                } else {
+                    term = rescale(term, scale - priceScale);
+                }
+                sum = Math.addExact(sum, term);
+                return;
+            } catch (ArithmeticException e) {
+                overflowedSum = BigDecimal.valueOf(sum, scale);
+            }
+        }
+        overflowedSum = overflowedSum.add(BigDecimal.valueOf(priceMantissa, priceScale)
+                .multiply(BigDecimal.valueOf(quantity)));
+    }
+
+    private static long rescale(long value, int digits) {
+        for (int i = 0; i < digits; i++) {
+            value = Math.multiplyExact(value, 10L);
+        }
+        return value;
+    }
+
+    BigDecimal sum() {
+        return overflowedSum == null ? BigDecimal.valueOf(sum, scale) : overflowedSum;
+    }
+}
@@ -0,0 +1,68 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Per-symbol storage kept in an array indexed by {@link SymbolDictionary} id.
+ *
+ * The array is copied whenever a slot is filled, which only happens for a new symbol, so readers see a fully
+ * published array without locking.
+ */
+class SymbolSlots<T> {
+
+    private final SymbolDictionary symbolDictionary;
+    private volatile Object[] slots = new Object[0];
+
+    SymbolSlots(SymbolDictionary symbolDictionary) {
+        this.symbolDictionary = symbolDictionary;
+    }
+
+    SymbolDictionary symbolDictionary() {
+        return symbolDictionary;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int symbolId) {
+        Object[] current = slots;
+        return symbolId >= 0 && symbolId < current.length ? (T) current[symbolId] : null;
+    }
+
+    T get(String stockSymbol) {
+        return get(symbolDictionary.lookup(stockSymbol));
+    }
+
+    T getOrCreate(String stockSymbol, Function<String, T> factory) {
+        int symbolId = symbolDictionary.idOf(stockSymbol);
+        T slot = get(symbolId);
+        return slot != null ? slot : create(symbolId, stockSymbol, factory);
+    }
+
+    private synchronized T create(int symbolId, String stockSymbol, Function<String, T> factory) {
+        T slot = get(symbolId);
+        if (slot != null) {
+            return slot;
+        }
+        slot = factory.apply(stockSymbol);
+        Object[] grown = Arrays.copyOf(slots, Math.max(slots.length, symbolId + 1));
+        grown[symbolId] = slot;
+        slots = grown;
+        return slot;
+    }
+
+    synchronized void clear() {
+        slots = new Object[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<T> consumer) {
+        for (Object slot : slots) {
+            if (slot != null) {
+                consumer.accept((T) slot);
+            }
+        }
+    }
+}
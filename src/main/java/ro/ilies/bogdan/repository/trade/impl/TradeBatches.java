@@ -0,0 +1,36 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.Trade;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Splits a batch of trades into runs of consecutive trades for the same symbol, each sorted by timestamp,
+ * so that a symbol's storage is locked once per run and the trades are mostly appended.
+ */
+final class TradeBatches {
+
+    private static final Comparator<Trade> BY_TIMESTAMP = Comparator.comparingLong(Trade::getTimestamp);
+
+    private TradeBatches() {
+    }
+
+    interface RunConsumer {
+        void accept(String stockSymbol, Trade[] trades, int from, int to);
+    }
+
+    static void forEachSymbolRun(Collection<Trade> trades, RunConsumer consumer) {
+        Trade[] batch = trades.toArray(new Trade[0]);
+        int runStart = 0;
+        for (int i = 1; i <= batch.length; i++) {
+            if (i == batch.length || !batch[i].getStockSymbol().equals(batch[runStart].getStockSymbol())) {
+                // stable sort, so trades sharing a timestamp keep the batch order
+                Arrays.sort(batch, runStart, i, BY_TIMESTAMP);
+                consumer.accept(batch[runStart].getStockSymbol(), batch, runStart, i);
+                runStart = i;
+            }
+        }
+    }
+}
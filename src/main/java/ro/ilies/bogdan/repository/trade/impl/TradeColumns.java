@@ -0,0 +1,270 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trades of a single stock stored column by column in primitive arrays, ordered by timestamp.
+ *
+ * A price is kept as its unscaled value and scale, so materialized trades are equal to the stored ones.
+ * The side column is a bitset where a set bit means {@link Trade.Type#SELL}.
+ */
+class TradeColumns {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String stockSymbol;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] priceMantissas = new long[INITIAL_CAPACITY];
+    private byte[] priceScales = new byte[INITIAL_CAPACITY];
+    private long[] sells = new long[wordsFor(INITIAL_CAPACITY)];
+    private int size;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TradeColumns(String stockSymbol) {
+        this.stockSymbol = stockSymbol;
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    void add(Trade trade) {
+        checkPrice(trade);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            ensureCapacity(size + 1);
+            insert(trade);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void addAll(Trade[] trades, int from, int to) {
+        for (int i = from; i < to; i++) {
+            checkPrice(trades[i]);
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            ensureCapacity(size + to - from);
+            for (int i = from; i < to; i++) {
+                insert(trades[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void checkPrice(Trade trade) {
+        BigDecimal price = trade.getPrice();
+        if (price.unscaledValue().bitLength() >= Long.SIZE || price.scale() != (byte) price.scale()) {
+            throw new RepositoryException("Trade's price cannot be stored in columnar form: " + price);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        priceMantissas = Arrays.copyOf(priceMantissas, newCapacity);
+        priceScales = Arrays.copyOf(priceScales, newCapacity);
+        sells = Arrays.copyOf(sells, wordsFor(newCapacity));
+    }
+
+    private void insert(Trade trade) {
+        long timestamp = trade.getTimestamp();
+        // trades normally arrive in order and are simply appended
+        int position = size == 0 || timestamps[size - 1] <= timestamp ? size : firstIndexAfter(timestamp);
+        int shifted = size - position;
+        System.arraycopy(timestamps, position, timestamps, position + 1, shifted);
+        System.arraycopy(quantities, position, quantities, position + 1, shifted);
+        System.arraycopy(priceMantissas, position, priceMantissas, position + 1, shifted);
+        System.arraycopy(priceScales, position, priceScales, position + 1, shifted);
+        for (int i = size; i > position; i--) {
+            setSell(i, isSell(i - 1));
+        }
+        timestamps[position] = trade.getTimestamp();
+        quantities[position] = trade.getSharesQuantity();
+        priceMantissas[position] = trade.getPrice().unscaledValue().longValue();
+        priceScales[position] = (byte) trade.getPrice().scale();
+        setSell(position, trade.getType() == Trade.Type.SELL);
+        size++;
+    }
+
+    private boolean isSell(int index) {
+        return (sells[index / Long.SIZE] & (1L << index)) != 0;
+    }
+
+    private void setSell(int index, boolean sell) {
+        if (sell) {
+            sells[index / Long.SIZE] |= 1L << index;
+        } else {
+            sells[index / Long.SIZE] &= ~(1L << index);
+        }
+    }
+
+    // index of the first trade made at or after given timestamp
+    private int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // index of the first trade made strictly after given timestamp
+    private int firstIndexAfter(long timestamp) {
+        return timestamp == Long.MAX_VALUE ? size : firstIndexAtOrAfter(timestamp + 1);
+    }
+
+    private Trade materialize(int index) {
+        return new Trade(stockSymbol, timestamps[index], quantities[index],
+                isSell(index) ? Trade.Type.SELL : Trade.Type.BUY,
+                BigDecimal.valueOf(priceMantissas[index], priceScales[index]));
+    }
+
+    List<Trade> after(long timestamp) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int from = firstIndexAtOrAfter(timestamp);
+            List<Trade> trades = new ArrayList<>(size - from);
+            for (int i = from; i < size; i++) {
+                trades.add(materialize(i));
+            }
+            return trades;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    TradeAggregate aggregateAfter(long timestamp) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int from = firstIndexAtOrAfter(timestamp);
+            if (from == size) {
+                return TradeAggregate.EMPTY;
+            }
+            long quantity = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            for (int i = from; i < size; i++) {
+                quantity += quantities[i];
+                notional.add(priceMantissas[i], priceScales[i], quantities[i]);
+            }
+            return new TradeAggregate(notional.sum(), quantity, size - from);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Totals of the trades of given side made at or after given timestamp.
+     */
+    TradeAggregate aggregateAfter(long timestamp, Trade.Type side) {
+        boolean sell = side == Trade.Type.SELL;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long quantity = 0;
+            long count = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            for (int i = firstIndexAtOrAfter(timestamp); i < size; i++) {
+                if (isSell(i) == sell) {
+                    quantity += quantities[i];
+                    notional.add(priceMantissas[i], priceScales[i], quantities[i]);
+                    count++;
+                }
+            }
+            return count == 0 ? TradeAggregate.EMPTY : new TradeAggregate(notional.sum(), quantity, count);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    List<Trade> between(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int start = firstIndexAtOrAfter(from);
+            int end = Math.max(start, firstIndexAtOrAfter(to));
+            List<Trade> trades = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                trades.add(materialize(i));
+            }
+            return trades;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    TradeAggregate aggregateBetween(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int start = firstIndexAtOrAfter(from);
+            int end = firstIndexAtOrAfter(to);
+            if (end <= start) {
+                return TradeAggregate.EMPTY;
+            }
+            long quantity = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            for (int i = start; i < end; i++) {
+                quantity += quantities[i];
+                notional.add(priceMantissas[i], priceScales[i], quantities[i]);
+            }
+            return new TradeAggregate(notional.sum(), quantity, end - start);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    Optional<PriceRange> priceRangeBetween(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int start = firstIndexAtOrAfter(from);
+            int end = firstIndexAtOrAfter(to);
+            if (end <= start) {
+                return Optional.empty();
+            }
+            int low = start;
+            int high = start;
+            for (int i = start + 1; i < end; i++) {
+                if (UnscaledPrices.compare(priceMantissas[i], priceScales[i], priceMantissas[low], priceScales[low]) < 0) {
+                    low = i;
+                }
+                if (UnscaledPrices.compare(priceMantissas[i], priceScales[i], priceMantissas[high], priceScales[high]) > 0) {
+                    high = i;
+                }
+            }
+            return Optional.of(new PriceRange(BigDecimal.valueOf(priceMantissas[low], priceScales[low]),
+                    BigDecimal.valueOf(priceMantissas[high], priceScales[high])));
+        } finally {
+            readLock.unlock();
+        }
+    }
+}
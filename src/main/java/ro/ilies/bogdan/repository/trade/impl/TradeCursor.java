@@ -0,0 +1,109 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.Trade;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over slices of {@link TradeSegment} arrays captured under the history's read lock.
+ *
+ * A segment never modifies the stored part of an array in place, so the slices keep showing the trades stored when
+ * the cursor was opened whatever is stored or evicted afterwards. Positions are global over the concatenated slices,
+ * which lets a cursor split at its middle in constant time and report the exact size of both halves.
+ */
+class TradeCursor implements Spliterator<Trade> {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+    private final Trade[][] slices;
+    private final int[] sliceStarts;
+    // offsets[k] is the position of the first trade of slice k, offsets[slices.length] the total number of trades
+    private final int[] offsets;
+    private int position;
+    private final int fence;
+    private int slice;
+
+    TradeCursor(Trade[][] slices, int[] sliceStarts, int[] offsets) {
+        this(slices, sliceStarts, offsets, 0, offsets[slices.length], 0);
+    }
+
+    private TradeCursor(Trade[][] slices, int[] sliceStarts, int[] offsets, int position, int fence, int slice) {
+        this.slices = slices;
+        this.sliceStarts = sliceStarts;
+        this.offsets = offsets;
+        this.position = position;
+        this.fence = fence;
+        this.slice = slice;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Trade> action) {
+        Objects.requireNonNull(action);
+        if (position >= fence) {
+            return false;
+        }
+        while (position >= offsets[slice + 1]) {
+            slice++;
+        }
+        Trade trade = slices[slice][sliceStarts[slice] + position - offsets[slice]];
+        position++;
+        action.accept(trade);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Trade> action) {
+        Objects.requireNonNull(action);
+        while (position < fence) {
+            while (position >= offsets[slice + 1]) {
+                slice++;
+            }
+            Trade[] trades = slices[slice];
+            int start = sliceStarts[slice] + position - offsets[slice];
+            int end = sliceStarts[slice] + Math.min(fence, offsets[slice + 1]) - offsets[slice];
+            position += end - start;
+            for (int i = start; i < end; i++) {
+                action.accept(trades[i]);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<Trade> trySplit() {
+        int middle = (position + fence) >>> 1;
+        if (middle <= position) {
+            return null;
+        }
+        TradeCursor prefix = new TradeCursor(slices, sliceStarts, offsets, position, middle, slice);
+        position = middle;
+        slice = sliceOf(middle);
+        return prefix;
+    }
+
+    // last slice starting at or before given position
+    private int sliceOf(int position) {
+        int low = 0;
+        int high = slices.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+}
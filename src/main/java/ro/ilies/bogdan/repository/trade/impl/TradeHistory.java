@@ -0,0 +1,357 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trades of a single stock, guarded by their own lock so that different symbols never contend.
+ *
+ * Trades are split into {@link TradeSegment}s, one per time bucket, so that old trades are evicted a whole
+ * segment at a time. Range queries only look at the trades of the segments the range partly covers: the totals of a
+ * range are differences of running totals and the segments it wholly covers know their lowest and highest price.
+ */
+class TradeHistory {
+
+    private final long bucketMillis;
+    private final List<TradeSegment> segments = new ArrayList<>();
+    private int size;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TradeHistory(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    void add(Trade trade) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            insert(trade);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void addAll(Trade[] trades, int from, int to) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (int i = from; i < to; i++) {
+                insert(trades[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void insert(Trade trade) {
+        long timestamp = trade.getTimestamp();
+        int index = segments.size() - 1;
+        // trades normally arrive in order and go to the newest segment
+        if (index < 0 || timestamp < segments.get(index).bucketStart() || timestamp >= segments.get(index).bucketEnd()) {
+            index = segmentIndexFor(timestamp);
+        }
+        BigDecimal notional = trade.getPrice().multiply(BigDecimal.valueOf(trade.getSharesQuantity()));
+        segments.get(index).insert(trade, notional);
+        for (int i = index + 1; i < segments.size(); i++) {
+            segments.get(i).shiftRunningTotals(notional, trade.getSharesQuantity(), trade.getType() == Trade.Type.SELL);
+        }
+        size++;
+    }
+
+    // index of the segment holding given timestamp, created if missing
+    private int segmentIndexFor(long timestamp) {
+        int index = firstSegmentEndingAfter(timestamp);
+        if (index < segments.size() && segments.get(index).bucketStart() <= timestamp) {
+            return index;
+        }
+        TradeSegment segment;
+        long bucketStart = Math.floorDiv(timestamp, bucketMillis) * bucketMillis;
+        if (index > 0) {
+            TradeSegment previous = segments.get(index - 1);
+            segment = new TradeSegment(bucketStart, bucketMillis, previous.closingTotals(), previous.closingSellTotals());
+        } else if (index < segments.size()) {
+            TradeSegment next = segments.get(index);
+            segment = new TradeSegment(bucketStart, bucketMillis, next.runningTotals(0), next.runningSellTotals(0));
+        } else {
+            segment = new TradeSegment(bucketStart, bucketMillis, TradeAggregate.EMPTY, TradeAggregate.EMPTY);
+        }
+        segments.add(index, segment);
+        return index;
+    }
+
+    // index of the first segment whose bucket ends after given timestamp
+    private int firstSegmentEndingAfter(long timestamp) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segments.get(middle).bucketEnd() <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    List<Trade> after(long timestamp) {
+        return toList(cursorAfter(timestamp));
+    }
+
+    /**
+     * Lazy view of the trades made at or after given timestamp, as stored when it is opened.
+     */
+    TradeCursor cursorAfter(long timestamp) {
+        return cursor(timestamp, Long.MAX_VALUE, false);
+    }
+
+    TradeAggregate aggregateAfter(long timestamp) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int first = firstSegmentEndingAfter(timestamp);
+            if (first == segments.size()) {
+                return TradeAggregate.EMPTY;
+            }
+            TradeSegment segment = segments.get(first);
+            int from = segment.firstIndexAtOrAfter(timestamp);
+            TradeSegment last = segments.get(segments.size() - 1);
+            long count = last.closingCount() - segment.runningCount(from);
+            if (count == 0) {
+                return TradeAggregate.EMPTY;
+            }
+            return new TradeAggregate(last.closingNotional().subtract(segment.runningNotional(from)),
+                    last.closingQuantity() - segment.runningQuantity(from),
+                    count);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Totals of the trades of given side made at or after given timestamp.
+     */
+    TradeAggregate aggregateAfter(long timestamp, Trade.Type side) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int first = firstSegmentEndingAfter(timestamp);
+            if (first == segments.size()) {
+                return TradeAggregate.EMPTY;
+            }
+            TradeSegment segment = segments.get(first);
+            int from = segment.firstIndexAtOrAfter(timestamp);
+            TradeSegment last = segments.get(segments.size() - 1);
+            BigDecimal sellNotional = last.runningSellNotional(last.size()).subtract(segment.runningSellNotional(from));
+            long sellQuantity = last.runningSellQuantity(last.size()) - segment.runningSellQuantity(from);
+            long sellCount = last.runningSellCount(last.size()) - segment.runningSellCount(from);
+            if (side == Trade.Type.SELL) {
+                return sellCount == 0 ? TradeAggregate.EMPTY : new TradeAggregate(sellNotional, sellQuantity, sellCount);
+            }
+            long buyCount = last.closingCount() - segment.runningCount(from) - sellCount;
+            if (buyCount == 0) {
+                return TradeAggregate.EMPTY;
+            }
+            return new TradeAggregate(last.closingNotional().subtract(segment.runningNotional(from)).subtract(sellNotional),
+                    last.closingQuantity() - segment.runningQuantity(from) - sellQuantity,
+                    buyCount);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    List<Trade> between(long from, long to) {
+        return toList(cursorBetween(from, to));
+    }
+
+    /**
+     * Lazy view of the trades made in [from, to), as stored when it is opened.
+     */
+    TradeCursor cursorBetween(long from, long to) {
+        return cursor(from, to, true);
+    }
+
+    // captures the segment arrays covering the range; only the number of segments is allocated, not the trades
+    private TradeCursor cursor(long from, long to, boolean bounded) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int first = firstSegmentEndingAfter(from);
+            Trade[][] slices = new Trade[segments.size() - first][];
+            int[] sliceStarts = new int[slices.length];
+            int[] offsets = new int[slices.length + 1];
+            int count = 0;
+            for (int s = first; s < segments.size(); s++) {
+                TradeSegment segment = segments.get(s);
+                int start = s == first ? segment.firstIndexAtOrAfter(from) : 0;
+                int end = bounded ? segment.firstIndexAtOrAfter(to) : segment.size();
+                if (start < end) {
+                    slices[count] = segment.trades();
+                    sliceStarts[count] = start;
+                    offsets[count + 1] = offsets[count] + end - start;
+                    count++;
+                }
+                if (end < segment.size()) {
+                    break;
+                }
+            }
+            return new TradeCursor(Arrays.copyOf(slices, count), Arrays.copyOf(sliceStarts, count),
+                    Arrays.copyOf(offsets, count + 1));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static List<Trade> toList(TradeCursor cursor) {
+        List<Trade> trades = new ArrayList<>((int) cursor.estimateSize());
+        cursor.forEachRemaining(trades::add);
+        return trades;
+    }
+
+    TradeAggregate aggregateBetween(long from, long to) {
+        if (to <= from) {
+            return TradeAggregate.EMPTY;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (segments.isEmpty()) {
+                return TradeAggregate.EMPTY;
+            }
+            TradeAggregate totals = runningTotalsAt(to).subtract(runningTotalsAt(from));
+            return totals.isEmpty() ? TradeAggregate.EMPTY : totals;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // totals of the trades stored before the first one made at or after given timestamp
+    private TradeAggregate runningTotalsAt(long timestamp) {
+        int index = firstSegmentEndingAfter(timestamp);
+        if (index == segments.size()) {
+            return segments.get(index - 1).closingTotals();
+        }
+        TradeSegment segment = segments.get(index);
+        return segment.runningTotals(segment.firstIndexAtOrAfter(timestamp));
+    }
+
+    Optional<PriceRange> priceRangeBetween(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            BigDecimal low = null;
+            BigDecimal high = null;
+            for (int s = firstSegmentEndingAfter(from); s < segments.size() && segments.get(s).bucketStart() < to; s++) {
+                TradeSegment segment = segments.get(s);
+                if (from <= segment.bucketStart() && segment.bucketEnd() <= to) {
+                    low = min(low, segment.lowestPrice());
+                    high = max(high, segment.highestPrice());
+                    continue;
+                }
+                int end = segment.firstIndexAtOrAfter(to);
+                for (int i = segment.firstIndexAtOrAfter(from); i < end; i++) {
+                    low = min(low, segment.trade(i).getPrice());
+                    high = max(high, segment.trade(i).getPrice());
+                }
+            }
+            return low == null ? Optional.empty() : Optional.of(new PriceRange(low, high));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static BigDecimal min(BigDecimal current, BigDecimal price) {
+        return current == null || price.compareTo(current) < 0 ? price : current;
+    }
+
+    private static BigDecimal max(BigDecimal current, BigDecimal price) {
+        return current == null || price.compareTo(current) > 0 ? price : current;
+    }
+
+    int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Start of the oldest bucket, or {@link Long#MAX_VALUE} when there is no segment that could be evicted
+     * without evicting the newest one.
+     */
+    long oldestEvictableBucketStart() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return segments.size() > 1 ? segments.get(0).bucketStart() : Long.MAX_VALUE;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the segments whose whole bucket is before given timestamp.
+     */
+    int evictBefore(long timestamp) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int evicted = 0;
+            while (!segments.isEmpty() && segments.get(0).bucketEnd() <= timestamp) {
+                evicted += evictOldestSegment();
+            }
+            return evicted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the oldest segments while there are more than given number of trades, always keeping the newest segment.
+     */
+    int evictAbove(long maximumSize) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int evicted = 0;
+            while (size > maximumSize && segments.size() > 1) {
+                evicted += evictOldestSegment();
+            }
+            return evicted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the oldest segment unless it is the newest one.
+     */
+    int evictOldest() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return segments.size() > 1 ? evictOldestSegment() : 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int evictOldestSegment() {
+        int evicted = segments.remove(0).size();
+        size -= evicted;
+        return evicted;
+    }
+}
@@ -0,0 +1,319 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trades of a single stock, appended to a directory of memory-mapped {@link JournalSegment}s.
+ */
+class TradeJournal {
+
+    private static final String SEGMENT_FILE_PATTERN = "segment-%08d.dat";
+
+    private final String stockSymbol;
+    private final Path directory;
+    private final int segmentCapacity;
+    private final List<JournalSegment> segments = new ArrayList<>();
+    private long lastTimestamp = Long.MIN_VALUE;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private TradeJournal(String stockSymbol, Path directory, int segmentCapacity) {
+        this.stockSymbol = stockSymbol;
+        this.directory = directory;
+        this.segmentCapacity = segmentCapacity;
+    }
+
+    static TradeJournal create(String stockSymbol, Path directory, int segmentCapacity) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot create journal directory " + directory + ": " + e.getMessage());
+        }
+        return new TradeJournal(stockSymbol, directory, segmentCapacity);
+    }
+
+    static TradeJournal open(String stockSymbol, Path directory, int segmentCapacity) {
+        TradeJournal journal = new TradeJournal(stockSymbol, directory, segmentCapacity);
+        List<Path> segmentFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            files.forEach(segmentFiles::add);
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot read journal directory " + directory + ": " + e.getMessage());
+        }
+        segmentFiles.sort(null);
+        for (Path segmentFile : segmentFiles) {
+            JournalSegment segment = JournalSegment.open(segmentFile);
+            journal.segments.add(segment);
+            if (segment.size() > 0) {
+                journal.lastTimestamp = segment.timestamp(segment.size() - 1);
+            }
+        }
+        return journal;
+    }
+
+    void add(Trade trade) {
+        checkPrice(trade);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkTimestamp(trade.getTimestamp());
+            append(trade);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void addAll(Trade[] trades, int from, int to) {
+        for (int i = from; i < to; i++) {
+            checkPrice(trades[i]);
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            // trades are sorted, so checking the first one rejects the run before anything is journaled
+            checkTimestamp(trades[from].getTimestamp());
+            for (int i = from; i < to; i++) {
+                append(trades[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void checkPrice(Trade trade) {
+        BigDecimal price = trade.getPrice();
+        if (price.unscaledValue().bitLength() >= Long.SIZE || price.scale() != (byte) price.scale()) {
+            throw new RepositoryException("Trade's price cannot be journaled: " + price);
+        }
+    }
+
+    private void checkTimestamp(long timestamp) {
+        if (timestamp < lastTimestamp) {
+            throw new RepositoryException("Trades must be journaled in timestamp order.");
+        }
+    }
+
+    private void append(Trade trade) {
+        BigDecimal price = trade.getPrice();
+        JournalSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.isFull()) {
+            segment = JournalSegment.create(directory.resolve(String.format(SEGMENT_FILE_PATTERN, segments.size())),
+                    segmentCapacity);
+            segments.add(segment);
+        }
+        segment.append(trade.getTimestamp(), price.unscaledValue().longValue(), price.scale(),
+                trade.getSharesQuantity(), trade.getType() == Trade.Type.SELL);
+        lastTimestamp = trade.getTimestamp();
+    }
+
+    // index of the first segment that may hold trades made at or after given timestamp
+    private int firstSegmentAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            JournalSegment segment = segments.get(middle);
+            if (segment.size() > 0 && segment.timestamp(segment.size() - 1) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    List<Trade> after(long timestamp) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Trade> trades = new ArrayList<>();
+            int first = firstSegmentAtOrAfter(timestamp);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                for (int i = s == first ? segment.firstIndexAtOrAfter(timestamp) : 0; i < segment.size(); i++) {
+                    trades.add(new Trade(stockSymbol, segment.timestamp(i), segment.quantity(i),
+                            segment.isSell(i) ? Trade.Type.SELL : Trade.Type.BUY,
+                            BigDecimal.valueOf(segment.priceMantissa(i), segment.priceScale(i))));
+                }
+            }
+            return trades;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    TradeAggregate aggregateAfter(long timestamp) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long quantity = 0;
+            long count = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            int first = firstSegmentAtOrAfter(timestamp);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                int from = s == first ? segment.firstIndexAtOrAfter(timestamp) : 0;
+                for (int i = from; i < segment.size(); i++) {
+                    quantity += segment.quantity(i);
+                    notional.add(segment.priceMantissa(i), segment.priceScale(i), segment.quantity(i));
+                }
+                count += segment.size() - from;
+            }
+            return count == 0 ? TradeAggregate.EMPTY : new TradeAggregate(notional.sum(), quantity, count);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Totals of the trades of given side made at or after given timestamp.
+     */
+    TradeAggregate aggregateAfter(long timestamp, Trade.Type side) {
+        boolean sell = side == Trade.Type.SELL;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long quantity = 0;
+            long count = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            int first = firstSegmentAtOrAfter(timestamp);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                for (int i = s == first ? segment.firstIndexAtOrAfter(timestamp) : 0; i < segment.size(); i++) {
+                    if (segment.isSell(i) == sell) {
+                        quantity += segment.quantity(i);
+                        notional.add(segment.priceMantissa(i), segment.priceScale(i), segment.quantity(i));
+                        count++;
+                    }
+                }
+            }
+            return count == 0 ? TradeAggregate.EMPTY : new TradeAggregate(notional.sum(), quantity, count);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    List<Trade> between(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Trade> trades = new ArrayList<>();
+            int first = firstSegmentAtOrAfter(from);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                int end = segment.firstIndexAtOrAfter(to);
+                for (int i = s == first ? segment.firstIndexAtOrAfter(from) : 0; i < end; i++) {
+                    trades.add(new Trade(stockSymbol, segment.timestamp(i), segment.quantity(i),
+                            segment.isSell(i) ? Trade.Type.SELL : Trade.Type.BUY,
+                            BigDecimal.valueOf(segment.priceMantissa(i), segment.priceScale(i))));
+                }
+                if (end < segment.size()) {
+                    break;
+                }
+            }
+            return trades;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    TradeAggregate aggregateBetween(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long quantity = 0;
+            long count = 0;
+            NotionalAccumulator notional = new NotionalAccumulator();
+            int first = firstSegmentAtOrAfter(from);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                int start = s == first ? segment.firstIndexAtOrAfter(from) : 0;
+                int end = segment.firstIndexAtOrAfter(to);
+                for (int i = start; i < end; i++) {
+                    quantity += segment.quantity(i);
+                    notional.add(segment.priceMantissa(i), segment.priceScale(i), segment.quantity(i));
+                }
+                count += Math.max(0, end - start);
+                if (end < segment.size()) {
+                    break;
+                }
+            }
+            return count == 0 ? TradeAggregate.EMPTY : new TradeAggregate(notional.sum(), quantity, count);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    Optional<PriceRange> priceRangeBetween(long from, long to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            JournalSegment lowSegment = null;
+            JournalSegment highSegment = null;
+            int low = 0;
+            int high = 0;
+            int first = firstSegmentAtOrAfter(from);
+            for (int s = first; s < segments.size(); s++) {
+                JournalSegment segment = segments.get(s);
+                int end = segment.firstIndexAtOrAfter(to);
+                for (int i = s == first ? segment.firstIndexAtOrAfter(from) : 0; i < end; i++) {
+                    if (lowSegment == null || UnscaledPrices.compare(segment.priceMantissa(i), segment.priceScale(i),
+                            lowSegment.priceMantissa(low), lowSegment.priceScale(low)) < 0) {
+                        lowSegment = segment;
+                        low = i;
+                    }
+                    if (highSegment == null || UnscaledPrices.compare(segment.priceMantissa(i), segment.priceScale(i),
+                            highSegment.priceMantissa(high), highSegment.priceScale(high)) > 0) {
+                        highSegment = segment;
+                        high = i;
+                    }
+                }
+                if (end < segment.size()) {
+                    break;
+                }
+            }
+            if (lowSegment == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new PriceRange(BigDecimal.valueOf(lowSegment.priceMantissa(low), lowSegment.priceScale(low)),
+                    BigDecimal.valueOf(highSegment.priceMantissa(high), highSegment.priceScale(high))));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    void flush() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            segments.forEach(JournalSegment::flush);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    void close() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            segments.forEach(JournalSegment::close);
+            segments.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+/**
+ * Which trades {@link InMemoryTradeEntityManager} keeps. Trades are grouped in buckets of {@link #getBucketMillis()}
+ * and evicted a whole bucket at a time, so limits are honoured at bucket granularity: by age, a bucket goes once all of
+ * it is too old; by count or memory, the oldest buckets go first but the newest bucket of a stock is always kept.
+ */
+public final class TradeRetentionPolicy {
+
+    public static final long DEFAULT_BUCKET_MILLIS = 60 * 1000;
+    public static final long DEFAULT_EVICTION_INTERVAL_MILLIS = 1000;
+    // retained heap per trade measured by TradeFootprintBenchmark (about 201 bytes with the running totals of both
+    // sides kept by TradeSegment), rounded up so that the memory limit is not exceeded; re-measure when the layout changes
+    static final long ESTIMATED_BYTES_PER_TRADE = 205;
+
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long bucketMillis;
+    private final long maxAgeMillis;
+    private final long maxTradesPerSymbol;
+    private final long maxMemoryBytes;
+    private final long evictionIntervalMillis;
+
+    private TradeRetentionPolicy(long bucketMillis, long maxAgeMillis, long maxTradesPerSymbol, long maxMemoryBytes,
+                                 long evictionIntervalMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket length must be greater than 0.");
+        }
+        if (maxAgeMillis <= 0 || maxTradesPerSymbol <= 0 || maxMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Retention limits must be greater than 0.");
+        }
+        if (evictionIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Eviction interval must be greater than 0.");
+        }
+        this.bucketMillis = bucketMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxTradesPerSymbol = maxTradesPerSymbol;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public static TradeRetentionPolicy unlimited() {
+        return new TradeRetentionPolicy(DEFAULT_BUCKET_MILLIS, UNLIMITED, UNLIMITED, UNLIMITED,
+                DEFAULT_EVICTION_INTERVAL_MILLIS);
+    }
+
+    public TradeRetentionPolicy withBucketMillis(long bucketMillis) {
+        return new TradeRetentionPolicy(bucketMillis, maxAgeMillis, maxTradesPerSymbol, maxMemoryBytes, evictionIntervalMillis);
+    }
+
+    public TradeRetentionPolicy withMaxAgeMillis(long maxAgeMillis) {
+        return new TradeRetentionPolicy(bucketMillis, maxAgeMillis, maxTradesPerSymbol, maxMemoryBytes, evictionIntervalMillis);
+    }
+
+    public TradeRetentionPolicy withMaxTradesPerSymbol(long maxTradesPerSymbol) {
+        return new TradeRetentionPolicy(bucketMillis, maxAgeMillis, maxTradesPerSymbol, maxMemoryBytes, evictionIntervalMillis);
+    }
+
+    /**
+     * Memory is estimated from the number of trades kept, at {@value #ESTIMATED_BYTES_PER_TRADE} bytes each.
+     */
+    public TradeRetentionPolicy withMaxMemoryBytes(long maxMemoryBytes) {
+        return new TradeRetentionPolicy(bucketMillis, maxAgeMillis, maxTradesPerSymbol, maxMemoryBytes, evictionIntervalMillis);
+    }
+
+    public TradeRetentionPolicy withEvictionIntervalMillis(long evictionIntervalMillis) {
+        return new TradeRetentionPolicy(bucketMillis, maxAgeMillis, maxTradesPerSymbol, maxMemoryBytes, evictionIntervalMillis);
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public long getMaxTradesPerSymbol() {
+        return maxTradesPerSymbol;
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public boolean isUnlimited() {
+        return maxAgeMillis == UNLIMITED && maxTradesPerSymbol == UNLIMITED && maxMemoryBytes == UNLIMITED;
+    }
+
+    long getMaxTotalTrades() {
+        return maxMemoryBytes == UNLIMITED ? UNLIMITED : maxMemoryBytes / ESTIMATED_BYTES_PER_TRADE;
+    }
+}
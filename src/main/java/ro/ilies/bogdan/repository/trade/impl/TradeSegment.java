@@ -0,0 +1,237 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Trades of one stock made within one time bucket, kept in parallel arrays ordered by timestamp.
+ *
+ * Trades sharing a timestamp keep the order in which they were stored, so the position in the arrays acts as the
+ * sequence number. Running totals are kept one slot ahead of the trades and continue those of the previous segment:
+ * slot i holds the totals of every trade of the stock stored before the i-th trade of this segment. Only differences
+ * of running totals are meaningful, so dropping older segments leaves them valid. Running totals of the sell trades
+ * alone are kept alongside, so the totals of either side cost as little as those of all trades.
+ *
+ * The stored part of the trades array is never modified in place: appends write past it and a trade stored out of
+ * order goes to a fresh copy. A {@link TradeCursor} can therefore hold on to the array and size seen under the read
+ * lock and read them without it.
+ */
+class TradeSegment {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long bucketStart;
+    private final long bucketEnd;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private Trade[] trades = new Trade[INITIAL_CAPACITY];
+    private BigDecimal[] runningNotional = new BigDecimal[INITIAL_CAPACITY + 1];
+    private long[] runningQuantity = new long[INITIAL_CAPACITY + 1];
+    private BigDecimal[] runningSellNotional = new BigDecimal[INITIAL_CAPACITY + 1];
+    private long[] runningSellQuantity = new long[INITIAL_CAPACITY + 1];
+    private long[] runningSellCount = new long[INITIAL_CAPACITY + 1];
+    // number of trades of the stock stored before this segment
+    private long openingCount;
+    private BigDecimal lowestPrice;
+    private BigDecimal highestPrice;
+    private int size;
+
+    TradeSegment(long bucketStart, long bucketMillis, TradeAggregate opening, TradeAggregate openingSells) {
+        this.bucketStart = bucketStart;
+        this.bucketEnd = bucketStart + bucketMillis;
+        this.runningNotional[0] = opening.getNotional();
+        this.runningQuantity[0] = opening.getQuantity();
+        this.openingCount = opening.getCount();
+        this.runningSellNotional[0] = openingSells.getNotional();
+        this.runningSellQuantity[0] = openingSells.getQuantity();
+        this.runningSellCount[0] = openingSells.getCount();
+    }
+
+    long bucketStart() {
+        return bucketStart;
+    }
+
+    // first timestamp after this segment's bucket
+    long bucketEnd() {
+        return bucketEnd;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Trade trade(int index) {
+        return trades[index];
+    }
+
+    // array holding the trades in its first size() slots, never modified in place
+    Trade[] trades() {
+        return trades;
+    }
+
+    long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    // lowest price of the segment's trades, null while it has none
+    BigDecimal lowestPrice() {
+        return lowestPrice;
+    }
+
+    BigDecimal highestPrice() {
+        return highestPrice;
+    }
+
+    BigDecimal runningNotional(int index) {
+        return runningNotional[index];
+    }
+
+    long runningQuantity(int index) {
+        return runningQuantity[index];
+    }
+
+    long runningCount(int index) {
+        return openingCount + index;
+    }
+
+    BigDecimal runningSellNotional(int index) {
+        return runningSellNotional[index];
+    }
+
+    long runningSellQuantity(int index) {
+        return runningSellQuantity[index];
+    }
+
+    long runningSellCount(int index) {
+        return runningSellCount[index];
+    }
+
+    TradeAggregate runningTotals(int index) {
+        return new TradeAggregate(runningNotional[index], runningQuantity[index], runningCount(index));
+    }
+
+    TradeAggregate runningSellTotals(int index) {
+        return new TradeAggregate(runningSellNotional[index], runningSellQuantity[index], runningSellCount[index]);
+    }
+
+    BigDecimal closingNotional() {
+        return runningNotional[size];
+    }
+
+    long closingQuantity() {
+        return runningQuantity[size];
+    }
+
+    long closingCount() {
+        return openingCount + size;
+    }
+
+    TradeAggregate closingTotals() {
+        return runningTotals(size);
+    }
+
+    TradeAggregate closingSellTotals() {
+        return runningSellTotals(size);
+    }
+
+    void insert(Trade trade, BigDecimal notional) {
+        ensureCapacity(size + 1);
+        long timestamp = trade.getTimestamp();
+        // trades normally arrive in order and are simply appended
+        int position = size == 0 || timestamps[size - 1] <= timestamp ? size : firstIndexAfter(timestamp);
+        int quantity = trade.getSharesQuantity();
+        int shifted = size - position;
+        System.arraycopy(timestamps, position, timestamps, position + 1, shifted);
+        if (shifted > 0) {
+            Trade[] shiftedTrades = new Trade[trades.length];
+            System.arraycopy(trades, 0, shiftedTrades, 0, position);
+            System.arraycopy(trades, position, shiftedTrades, position + 1, shifted);
+            trades = shiftedTrades;
+        }
+        System.arraycopy(runningNotional, position + 1, runningNotional, position + 2, shifted);
+        System.arraycopy(runningQuantity, position + 1, runningQuantity, position + 2, shifted);
+        System.arraycopy(runningSellNotional, position + 1, runningSellNotional, position + 2, shifted);
+        System.arraycopy(runningSellQuantity, position + 1, runningSellQuantity, position + 2, shifted);
+        System.arraycopy(runningSellCount, position + 1, runningSellCount, position + 2, shifted);
+        timestamps[position] = timestamp;
+        trades[position] = trade;
+        runningNotional[position + 1] = runningNotional[position].add(notional);
+        runningQuantity[position + 1] = runningQuantity[position] + quantity;
+        runningSellNotional[position + 1] = runningSellNotional[position];
+        runningSellQuantity[position + 1] = runningSellQuantity[position];
+        runningSellCount[position + 1] = runningSellCount[position];
+        for (int i = position + 2; i <= size + 1; i++) {
+            runningNotional[i] = runningNotional[i].add(notional);
+            runningQuantity[i] += quantity;
+        }
+        if (trade.getType() == Trade.Type.SELL) {
+            addToRunningSellTotals(position + 1, size + 1, notional, quantity);
+        }
+        BigDecimal price = trade.getPrice();
+        if (lowestPrice == null || price.compareTo(lowestPrice) < 0) {
+            lowestPrice = price;
+        }
+        if (highestPrice == null || price.compareTo(highestPrice) > 0) {
+            highestPrice = price;
+        }
+        size++;
+    }
+
+    /**
+     * Accounts for a trade stored in an earlier segment.
+     */
+    void shiftRunningTotals(BigDecimal notional, int quantity, boolean sell) {
+        for (int i = 0; i <= size; i++) {
+            runningNotional[i] = runningNotional[i].add(notional);
+            runningQuantity[i] += quantity;
+        }
+        if (sell) {
+            addToRunningSellTotals(0, size, notional, quantity);
+        }
+        openingCount++;
+    }
+
+    private void addToRunningSellTotals(int from, int to, BigDecimal notional, int quantity) {
+        for (int i = from; i <= to; i++) {
+            runningSellNotional[i] = runningSellNotional[i].add(notional);
+            runningSellQuantity[i] += quantity;
+            runningSellCount[i]++;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= trades.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, trades.length * 2);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        trades = Arrays.copyOf(trades, newCapacity);
+        runningNotional = Arrays.copyOf(runningNotional, newCapacity + 1);
+        runningQuantity = Arrays.copyOf(runningQuantity, newCapacity + 1);
+        runningSellNotional = Arrays.copyOf(runningSellNotional, newCapacity + 1);
+        runningSellQuantity = Arrays.copyOf(runningSellQuantity, newCapacity + 1);
+        runningSellCount = Arrays.copyOf(runningSellCount, newCapacity + 1);
+    }
+
+    // index of the first trade made at or after given timestamp
+    int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // index of the first trade made strictly after given timestamp
+    private int firstIndexAfter(long timestamp) {
+        return timestamp == Long.MAX_VALUE ? size : firstIndexAtOrAfter(timestamp + 1);
+    }
+}
@@ -0,0 +1,34 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Compares prices given as unscaled value and scale without creating a BigDecimal for each, as long as bringing
+ * them to the same scale fits in a long.
+ */
+final class UnscaledPrices {
+
+    private UnscaledPrices() {
+    }
+
+    static int compare(long mantissa, int scale, long otherMantissa, int otherScale) {
+        if (scale == otherScale) {
+            return Long.compare(mantissa, otherMantissa);
+        }
+        try {
+            if (scale < otherScale) {
+                return Long.compare(rescale(mantissa, otherScale - scale), otherMantissa);
+            }
+            return Long.compare(mantissa, rescale(otherMantissa, scale - otherScale));
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(mantissa, scale).compareTo(BigDecimal.valueOf(otherMantissa, otherScale));
+        }
+    }
+
+    private static long rescale(long value, int digits) {
+        for (int i = 0; i < digits; i++) {
+            value = Math.multiplyExact(value, 10L);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,477 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
+import ro.ilies.bogdan.repository.trade.TradeEntityManager;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Makes another {@link TradeEntityManager} durable: trades are appended to a log file and forced to disk before they
+ * are stored and before {@link #store(Trade)} returns.
+ *
+ * A single thread commits the log, grouping the trades of concurrent writers into one fsync as the
+ * {@link GroupCommitPolicy} allows, and stores them in log order. On opening, the trades of an existing log are
+ * replayed into the decorated store; a record torn by a crash is dropped along with anything after it. Should the
+ * committing thread fail unexpectedly, the waiting and later writers get an exception instead of waiting forever.
+ *
+ * The log is never truncated; take a {@link ro.ilies.bogdan.repository.snapshot.MarketSnapshot} and start a new log
+ * to bound recovery time.
+ */
+public class WriteAheadLogTradeEntityManager implements TradeEntityManager, Closeable {
+
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final int REPLAY_BATCH_SIZE = 1 << 16;
+    private static final PendingCommit SHUTDOWN = new PendingCommit(new Trade[0]);
+
+    private final TradeEntityManager delegate;
+    private final Path logFile;
+    private final GroupCommitPolicy commitPolicy;
+    private final FileChannel channel;
+    private final BlockingQueue<PendingCommit> pendingCommits = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong committedTrades = new AtomicLong();
+    private final long recoveredTrades;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private boolean closed;
+    // what stopped the committing thread, if anything but closing did
+    private Throwable committerFailure;
+
+    public WriteAheadLogTradeEntityManager(TradeEntityManager delegate, Path logFile) {
+        this(delegate, logFile, GroupCommitPolicy.defaults());
+    }
+
+    public WriteAheadLogTradeEntityManager(TradeEntityManager delegate, Path logFile, GroupCommitPolicy commitPolicy) {
+        this.delegate = delegate;
+        this.logFile = logFile;
+        this.commitPolicy = commitPolicy;
+        try {
+            this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.recoveredTrades = recover();
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot open write-ahead log " + logFile + ": " + e.getMessage());
+        }
+        this.committer = new Thread(this::commitLoop, "trade-wal-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // replays the valid records and cuts the log after the last of them
+    private long recover() throws IOException {
+        long validLength = 0;
+        long recovered = 0;
+        List<Trade> replayed = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 1 << 16))) {
+            byte[] payload = new byte[MAX_RECORD_SIZE];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    input.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                replayed.add(decode(ByteBuffer.wrap(payload, 0, length)));
+                validLength += 8 + length;
+                if (replayed.size() == REPLAY_BATCH_SIZE) {
+                    recovered += replay(replayed);
+                }
+            }
+        }
+        recovered += replay(replayed);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return recovered;
+    }
+
+    // replays one symbol run at a time, so that a refused trade only sends its own run down the slow path
+    private int replay(List<Trade> trades) {
+        int count = 0;
+        int runStart = 0;
+        for (int i = 1; i <= trades.size(); i++) {
+            if (i == trades.size() || !trades.get(i).getStockSymbol().equals(trades.get(runStart).getStockSymbol())) {
+                count += replayRun(trades.subList(runStart, i));
+                runStart = i;
+            }
+        }
+        trades.clear();
+        return count;
+    }
+
+    private int replayRun(List<Trade> run) {
+        try {
+            delegate.storeAll(run);
+            return run.size();
+        } catch (RuntimeException e) {
+            // nothing of a refused run was stored; a trade the store refused when it was logged is refused again,
+            // keep the others
+            int count = 0;
+            for (Trade trade : run) {
+                try {
+                    delegate.store(trade);
+                    count++;
+                } catch (RuntimeException refused) {
+                    // not recovered
+                }
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void store(Trade trade) {
+        commit(new Trade[]{trade});
+    }
+
+    /**
+     * The trades are committed together, whatever the batch size of the {@link GroupCommitPolicy}.
+     */
+    @Override
+    public void storeAll(Collection<Trade> trades) {
+        commit(trades.toArray(new Trade[0]));
+    }
+
+    private void commit(Trade[] trades) {
+        PendingCommit commit = new PendingCommit(trades);
+        enqueue(commit);
+        try {
+            commit.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for trades to be logged.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RepositoryException(e.getCause().getMessage());
+        }
+    }
+
+    // nothing is queued after the shutdown marker, so every accepted commit completes
+    private synchronized void enqueue(PendingCommit commit) {
+        if (closed) {
+            throw closedException();
+        }
+        pendingCommits.add(commit);
+    }
+
+    private void commitLoop() {
+        List<PendingCommit> batch = new ArrayList<>();
+        try {
+            commitUntilShutdown(batch);
+        } catch (Throwable e) {
+            // nobody would ever complete the waiting writers, so fail them and refuse new ones
+            RepositoryException failure;
+            synchronized (this) {
+                closed = true;
+                committerFailure = e;
+                failure = closedException();
+            }
+            batch.forEach(commit -> commit.done.completeExceptionally(failure));
+            failPendingCommits(failure);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            return;
+        }
+        failPendingCommits(closedException());
+    }
+
+    private void commitUntilShutdown(List<PendingCommit> batch) {
+        long maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(commitPolicy.getMaxDelayMicros());
+        boolean shutdown = false;
+        while (!shutdown) {
+            try {
+                PendingCommit first = pendingCommits.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                batch.add(first);
+                int size = first.trades.length;
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (size < commitPolicy.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingCommit next = remaining > 0
+                            ? pendingCommits.poll(remaining, TimeUnit.NANOSECONDS) : pendingCommits.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        shutdown = true;
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.trades.length;
+                }
+            } catch (InterruptedException e) {
+                shutdown = true;
+            }
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private synchronized RepositoryException closedException() {
+        if (committerFailure == null) {
+            return new RepositoryException("Write-ahead log is closed.");
+        }
+        RepositoryException failure = new RepositoryException("Write-ahead log failed: " + committerFailure);
+        failure.initCause(committerFailure);
+        return failure;
+    }
+
+    private void failPendingCommits(RepositoryException failure) {
+        for (PendingCommit abandoned; (abandoned = pendingCommits.poll()) != null; ) {
+            abandoned.done.completeExceptionally(failure);
+        }
+    }
+
+    private void commit(List<PendingCommit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingCommit> logged = new ArrayList<>(batch.size());
+        buffer.clear();
+        for (PendingCommit commit : batch) {
+            int mark = buffer.position();
+            try {
+                for (Trade trade : commit.trades) {
+                    append(trade);
+                }
+                logged.add(commit);
+            } catch (RepositoryException e) {
+                buffer.position(mark);
+                commit.done.completeExceptionally(e);
+            }
+        }
+        if (logged.isEmpty()) {
+            return;
+        }
+        long position = -1;
+        try {
+            position = channel.position();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            truncateQuietly(position);
+            RepositoryException failure = new RepositoryException(
+                    "Cannot write to write-ahead log " + logFile + ": " + e.getMessage());
+            logged.forEach(commit -> commit.done.completeExceptionally(failure));
+            return;
+        }
+        commits.incrementAndGet();
+        for (PendingCommit commit : logged) {
+            try {
+                delegate.storeAll(Arrays.asList(commit.trades));
+                committedTrades.addAndGet(commit.trades.length);
+                commit.done.complete(null);
+            } catch (RuntimeException e) {
+                commit.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void truncateQuietly(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException ignored) {
+            // the torn records are dropped on recovery
+        }
+    }
+
+    // length, CRC32 of the payload, then symbol, timestamp, quantity, side and price
+    private void append(Trade trade) {
+        byte[] symbol = trade.getStockSymbol().getBytes(StandardCharsets.UTF_8);
+        byte[] unscaled = trade.getPrice().unscaledValue().toByteArray();
+        int length = 2 + symbol.length + 8 + 4 + 1 + 4 + 1 + unscaled.length;
+        if (symbol.length > Short.MAX_VALUE || unscaled.length > Byte.MAX_VALUE || length > MAX_RECORD_SIZE) {
+            throw new RepositoryException("Trade cannot be logged: " + trade);
+        }
+        ensureCapacity(8 + length);
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0);
+        buffer.putShort((short) symbol.length).put(symbol);
+        buffer.putLong(trade.getTimestamp());
+        buffer.putInt(trade.getSharesQuantity());
+        buffer.put((byte) trade.getType().ordinal());
+        buffer.putInt(trade.getPrice().scale());
+        buffer.put((byte) unscaled.length).put(unscaled);
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + 8).limit(start + 8 + length);
+        crc.update(payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private static Trade decode(ByteBuffer payload) {
+        byte[] symbol = new byte[payload.getShort()];
+        payload.get(symbol);
+        long timestamp = payload.getLong();
+        int sharesQuantity = payload.getInt();
+        Trade.Type type = Trade.Type.values()[payload.get()];
+        int scale = payload.getInt();
+        byte[] unscaled = new byte[payload.get()];
+        payload.get(unscaled);
+        return new Trade(new String(symbol, StandardCharsets.UTF_8), timestamp, sharesQuantity, type,
+                new BigDecimal(new BigInteger(unscaled), scale));
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(String stockSymbol, long timestamp) {
+        return delegate.retrieveAfter(stockSymbol, timestamp);
+    }
+
+    @Override
+    public List<Trade> retrieveAfter(int symbolId, long timestamp) {
+        return delegate.retrieveAfter(symbolId, timestamp);
+    }
+
+    @Override
+    public Spliterator<Trade> spliteratorAfter(String stockSymbol, long timestamp) {
+        return delegate.spliteratorAfter(stockSymbol, timestamp);
+    }
+
+    @Override
+    public Spliterator<Trade> spliteratorAfter(int symbolId, long timestamp) {
+        return delegate.spliteratorAfter(symbolId, timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp) {
+        return delegate.aggregateAfter(stockSymbol, timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp) {
+        return delegate.aggregateAfter(symbolId, timestamp);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        return delegate.aggregateAfter(stockSymbol, timestamp, side);
+    }
+
+    @Override
+    public TradeAggregate aggregateAfter(int symbolId, long timestamp, Trade.Type side) {
+        return delegate.aggregateAfter(symbolId, timestamp, side);
+    }
+
+    @Override
+    public List<Trade> retrieveBetween(String stockSymbol, long from, long to) {
+        return delegate.retrieveBetween(stockSymbol, from, to);
+    }
+
+    @Override
+    public Spliterator<Trade> spliteratorBetween(String stockSymbol, long from, long to) {
+        return delegate.spliteratorBetween(stockSymbol, from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(String stockSymbol, long from, long to) {
+        return delegate.aggregateBetween(stockSymbol, from, to);
+    }
+
+    @Override
+    public TradeAggregate aggregateBetween(int symbolId, long from, long to) {
+        return delegate.aggregateBetween(symbolId, from, to);
+    }
+
+    @Override
+    public Optional<PriceRange> priceRangeBetween(String stockSymbol, long from, long to) {
+        return delegate.priceRangeBetween(stockSymbol, from, to);
+    }
+
+    @Override
+    public SymbolDictionary getSymbolDictionary() {
+        return delegate.getSymbolDictionary();
+    }
+
+    public long getRecoveredTradeCount() {
+        return recoveredTrades;
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getCommittedTradeCount() {
+        return committedTrades.get();
+    }
+
+    /**
+     * Commits the trades already submitted, then closes the log. The decorated store is left open.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            // a log closed by a failure of the committer still has its channel to close
+            if (!closed) {
+                closed = true;
+                pendingCommits.add(SHUTDOWN);
+            }
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot close write-ahead log " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    private static final class PendingCommit {
+        private final Trade[] trades;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingCommit(Trade[] trades) {
+            this.trades = trades;
+        }
+    }
+}
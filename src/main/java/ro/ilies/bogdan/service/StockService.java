@@ -1,9 +1,15 @@
 package ro.ilies.bogdan.service;
 
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Stock;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeBatchReport;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * Created by bogdan-ilies on 25.02.2018.
@@ -12,13 +18,131 @@ public interface StockService {
 
     BigDecimal dividendYield(String stockSymbol, BigDecimal marketPrice);
 
+    BigDecimal dividendYield(int symbolId, BigDecimal marketPrice);
+
     BigDecimal PERatio(String stockSymbol, BigDecimal marketPrice);
 
+    BigDecimal PERatio(int symbolId, BigDecimal marketPrice);
+
+    /**
+     * Dividend yield of every given stock at the market price of the same position. A stock that cannot be
+     * queried is reported as a failure of its position without failing the others.
+     */
+    BulkQueryResult dividendYields(String[] stockSymbols, BigDecimal[] marketPrices);
+
+    default BulkQueryResult dividendYields(Map<String, BigDecimal> marketPricesBySymbol) {
+        SymbolPrices symbolPrices = new SymbolPrices(marketPricesBySymbol);
+        return dividendYields(symbolPrices.stockSymbols, symbolPrices.marketPrices);
+    }
+
+    BulkQueryResult PERatios(String[] stockSymbols, BigDecimal[] marketPrices);
+
+    default BulkQueryResult PERatios(Map<String, BigDecimal> marketPricesBySymbol) {
+        SymbolPrices symbolPrices = new SymbolPrices(marketPricesBySymbol);
+        return PERatios(symbolPrices.stockSymbols, symbolPrices.marketPrices);
+    }
+
+    /**
+     * Id of a registered stock's symbol. Queries by id skip hashing the symbol, which pays off for callers
+     * that query the same stocks repeatedly.
+     */
+    int symbolId(String stockSymbol);
+
+    String stockSymbol(int symbolId);
+
+    /**
+     * Records given trade and notifies every trade listener of it. If a listener fails, the trade is still recorded
+     * and the other listeners notified, and a {@link ro.ilies.bogdan.service.exception.TradeListenerException} is
+     * thrown afterwards.
+     */
     void addTrade(Trade trade);
 
+    /**
+     * Records a batch of trades, rejecting invalid ones instead of failing the whole batch. The trades of a symbol
+     * the repository refuses to store are all rejected, and a failing trade listener is reported without stopping
+     * the batch.
+     */
+    TradeBatchReport addTrades(Collection<Trade> trades);
+
+    TradeBatchReport addTrades(Trade[] trades);
+
     BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp);
 
+    BigDecimal volumeWeightedStockPriceAfter(int symbolId, long timestamp);
+
+    /**
+     * Volume weighted price of the trades of given side made at or after given timestamp, at the cost of the query
+     * over all trades.
+     */
+    BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp, Trade.Type side);
+
+    /**
+     * Shares traded on given side at or after given timestamp; 0 when there was no such trade.
+     */
+    long tradedVolumeAfter(String stockSymbol, long timestamp, Trade.Type side);
+
+    /**
+     * Buy volume minus sell volume over their sum, for the trades made at or after given timestamp: 1 when there
+     * was only buying and -1 when there was only selling.
+     */
+    BigDecimal orderImbalanceAfter(String stockSymbol, long timestamp);
+
+    BulkQueryResult volumeWeightedStockPricesAfter(String[] stockSymbols, long timestamp);
+
+    /**
+     * Volume weighted price of the trades made in [from, to), aggregated inside the repository.
+     */
+    BigDecimal volumeWeightedStockPriceBetween(String stockSymbol, long from, long to);
+
+    /**
+     * Lowest and highest price of the trades made in [from, to).
+     */
+    PriceRange priceRangeBetween(String stockSymbol, long from, long to);
+
+    /**
+     * Starts tracking the volume weighted price of a stock over the last windowMillis milliseconds, seeded with
+     * the trades already recorded in the window. Trades recorded concurrently are counted once, whether they end up
+     * among the stored ones or reach the window afterwards. Close the window to stop tracking it.
+     */
+    VolumeWeightedPriceWindow trackVolumeWeightedStockPrice(String stockSymbol, long windowMillis);
+
+    /**
+     * Pushes the volume weighted price of a stock over the last windowMillis milliseconds to given listener,
+     * starting with the current one and then whenever a trade of the stock is recorded. Updates are coalesced, so
+     * a listener gets the latest value rather than every intermediate one.
+     */
+    Subscription subscribeVolumeWeightedStockPrice(String stockSymbol, long windowMillis, UpdateListener listener);
+
+    /**
+     * Pushes the {@link #GBCEAllShareIndex()} to given listener, starting with the current one and then whenever a
+     * stock is registered.
+     */
+    Subscription subscribeGBCEAllShareIndex(UpdateListener listener);
+
+    /**
+     * Index kept up to date on every registration and read in constant time. Its relative error is below 1e-12,
+     * so it may differ from {@link #exactGBCEAllShareIndex()} in the last decimal.
+     */
     BigDecimal GBCEAllShareIndex();
 
+    /**
+     * Index recomputed from the par values of all registered stocks, e.g. for end of day reconciliation.
+     */
+    BigDecimal exactGBCEAllShareIndex();
+
+    /**
+     * Index recomputed as the exponential of the mean logarithm of all par values, rounded to given context rather
+     * than to the scale of the other results. Unlike {@link #exactGBCEAllShareIndex()} it never builds the product of all par values, so its cost
+     * only grows linearly with the registry.
+     */
+    BigDecimal GBCEAllShareIndex(MathContext mathContext);
+
     void register(Stock stock);
+
+    /**
+     * Notifies given listener of every trade recorded from now on.
+     */
+    void addTradeListener(TradeListener listener);
+
+    void removeTradeListener(TradeListener listener);
 }
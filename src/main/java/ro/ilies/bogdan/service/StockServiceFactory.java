@@ -1,6 +1,7 @@
 package ro.ilies.bogdan.service;
 
 import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
 import ro.ilies.bogdan.service.impl.StockServiceImpl;
 
@@ -10,6 +11,8 @@ import ro.ilies.bogdan.service.impl.StockServiceImpl;
 public class StockServiceFactory {
 
     public static StockService getStockService() {
-        return new StockServiceImpl(new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
+        SymbolDictionary symbolDictionary = new SymbolDictionary();
+        return new StockServiceImpl(new InMemoryStockEntityManager(symbolDictionary),
+                new InMemoryTradeEntityManager(symbolDictionary));
     }
 }
@@ -0,0 +1,12 @@
+package ro.ilies.bogdan.service;
+
+import java.io.Closeable;
+
+/**
+ * Registration of an {@link UpdateListener}; closing it stops further updates.
+ */
+public interface Subscription extends Closeable {
+
+    @Override
+    void close();
+}
@@ -0,0 +1,32 @@
+package ro.ilies.bogdan.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Symbols and market prices of a map copied to parallel arrays, in a single pass over its entries.
+ */
+final class SymbolPrices {
+
+    final String[] stockSymbols;
+    final BigDecimal[] marketPrices;
+
+    SymbolPrices(Map<String, BigDecimal> marketPricesBySymbol) {
+        int size = marketPricesBySymbol.size();
+        String[] symbols = new String[size];
+        BigDecimal[] prices = new BigDecimal[size];
+        int count = 0;
+        for (Map.Entry<String, BigDecimal> entry : marketPricesBySymbol.entrySet()) {
+            // a concurrent map may grow while it is copied
+            if (count == size) {
+                break;
+            }
+            symbols[count] = entry.getKey();
+            prices[count] = entry.getValue();
+            count++;
+        }
+        this.stockSymbols = count == size ? symbols : Arrays.copyOf(symbols, count);
+        this.marketPrices = count == size ? prices : Arrays.copyOf(prices, count);
+    }
+}
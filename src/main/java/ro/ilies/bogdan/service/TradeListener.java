@@ -0,0 +1,13 @@
+package ro.ilies.bogdan.service;
+
+import ro.ilies.bogdan.model.Trade;
+
+/**
+ * Notified of every trade recorded by a {@link StockService}, on the thread that added it and after it was stored.
+ * Listeners are called for every trade, so they must be quick and must not throw.
+ */
+@FunctionalInterface
+public interface TradeListener {
+
+    void onTrade(Trade trade);
+}
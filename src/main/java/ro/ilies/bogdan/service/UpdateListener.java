@@ -0,0 +1,13 @@
+package ro.ilies.bogdan.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Receives the new value of a subscribed price or index, on a dispatcher thread rather than the one that changed it.
+ * Calls for one subscription never overlap.
+ */
+@FunctionalInterface
+public interface UpdateListener {
+
+    void onUpdate(BigDecimal value);
+}
@@ -0,0 +1,28 @@
+package ro.ilies.bogdan.service;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+
+/**
+ * Volume weighted price of a stock over a window that slides with the clock, kept up to date as trades are
+ * recorded. Reading it takes constant time however many trades the window holds.
+ */
+public interface VolumeWeightedPriceWindow extends Closeable {
+
+    String getStockSymbol();
+
+    long getWindowMillis();
+
+    /**
+     * Volume weighted price of the trades made in the last {@link #getWindowMillis()} milliseconds.
+     *
+     * @throws ro.ilies.bogdan.service.exception.NoTradeFoundException if the window holds no trade
+     */
+    BigDecimal current();
+
+    /**
+     * Stops tracking the window.
+     */
+    @Override
+    void close();
+}
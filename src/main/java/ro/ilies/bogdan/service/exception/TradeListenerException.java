@@ -0,0 +1,11 @@
+package ro.ilies.bogdan.service.exception;
+
+/**
+ * Thrown after a trade was recorded and every trade listener was notified, when at least one of them failed. The
+ * trade must not be added again. The first failure is the cause, later ones are suppressed.
+ */
+public class TradeListenerException extends BusinessException {
+    public TradeListenerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,70 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact product of many decimals, multiplied as a balanced tree: operands of a multiplication have about the same
+ * size, which is much cheaper than multiplying an ever growing product by one small value at a time. Products of
+ * at least {@link #PARALLEL_THRESHOLD} values are split across the common fork join pool.
+ */
+final class BalancedProduct {
+
+    static final int PARALLEL_THRESHOLD = 2048;
+    private static final int LEAF_SIZE = 16;
+    private static final int TASK_SIZE = 512;
+
+    private BalancedProduct() {
+    }
+
+    static BigDecimal of(BigDecimal[] values) {
+        if (values.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return product(values, 0, values.length);
+        }
+        return ForkJoinPool.commonPool().invoke(new ProductTask(values, 0, values.length));
+    }
+
+    /**
+     * Product of the values in [from, to), in the calling thread.
+     */
+    static BigDecimal of(BigDecimal[] values, int from, int to) {
+        return product(values, from, to);
+    }
+
+    private static BigDecimal product(BigDecimal[] values, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            BigDecimal product = BigDecimal.ONE;
+            for (int i = from; i < to; i++) {
+                product = product.multiply(values[i]);
+            }
+            return product;
+        }
+        int middle = (from + to) >>> 1;
+        return product(values, from, middle).multiply(product(values, middle, to));
+    }
+
+    private static final class ProductTask extends RecursiveTask<BigDecimal> {
+        private final BigDecimal[] values;
+        private final int from;
+        private final int to;
+
+        private ProductTask(BigDecimal[] values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BigDecimal compute() {
+            if (to - from <= TASK_SIZE) {
+                return product(values, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ProductTask right = new ProductTask(values, middle, to);
+            right.fork();
+            BigDecimal left = new ProductTask(values, from, middle).compute();
+            return left.multiply(right.join());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.Bar;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.TradeListener;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Builds OHLCV bars of every stock for a few intervals as trades are recorded, so charts never read raw trades.
+ * Register it with {@link ro.ilies.bogdan.service.StockService#addTradeListener(TradeListener)}.
+ *
+ * Each stock keeps the most recent bars of each interval in a fixed size ring, and fetching the last N bars
+ * takes O(N). Bars of different stocks are updated in parallel.
+ */
+public class BarAggregator implements TradeListener {
+
+    public static final long ONE_SECOND = 1000;
+    public static final long ONE_MINUTE = 60 * ONE_SECOND;
+    public static final long FIVE_MINUTES = 5 * ONE_MINUTE;
+
+    private final NumericEngine numericEngine;
+    private final int capacity;
+    private final long[] intervalsMillis;
+    private final ConcurrentMap<String, BarSeries[]> barsByStockSymbol = new ConcurrentHashMap<>();
+
+    public BarAggregator(int capacity) {
+        this(new BigDecimalNumericEngine(StockServiceImpl.PRECISION_DIGITS), capacity, ONE_SECOND, ONE_MINUTE, FIVE_MINUTES);
+    }
+
+    /**
+     * @param capacity number of bars kept per stock and interval
+     */
+    public BarAggregator(NumericEngine numericEngine, int capacity, long... intervalsMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Bar capacity must be greater than 0.");
+        }
+        if (intervalsMillis.length == 0 || Arrays.stream(intervalsMillis).anyMatch(interval -> interval <= 0)) {
+            throw new IllegalArgumentException("Bar intervals must be greater than 0.");
+        }
+        this.numericEngine = numericEngine;
+        this.capacity = capacity;
+        this.intervalsMillis = intervalsMillis.clone();
+    }
+
+    @Override
+    public void onTrade(Trade trade) {
+        for (BarSeries bars : barsFor(trade.getStockSymbol())) {
+            bars.add(trade);
+        }
+    }
+
+    private BarSeries[] barsFor(String stockSymbol) {
+        BarSeries[] bars = barsByStockSymbol.get(stockSymbol);
+        if (bars == null) {
+            bars = barsByStockSymbol.computeIfAbsent(stockSymbol, symbol -> {
+                BarSeries[] series = new BarSeries[intervalsMillis.length];
+                for (int i = 0; i < series.length; i++) {
+                    series[i] = new BarSeries(symbol, intervalsMillis[i], capacity);
+                }
+                return series;
+            });
+        }
+        return bars;
+    }
+
+    /**
+     * Up to count most recent bars of given stock and interval, oldest first. Intervals without trades have no bar.
+     */
+    public List<Bar> lastBars(String stockSymbol, long intervalMillis, int count) {
+        int interval = indexOf(intervalMillis);
+        BarSeries[] bars = barsByStockSymbol.get(stockSymbol);
+        if (bars == null) {
+            return Collections.emptyList();
+        }
+        return bars[interval].last(count, numericEngine);
+    }
+
+    private int indexOf(long intervalMillis) {
+        for (int i = 0; i < intervalsMillis.length; i++) {
+            if (intervalsMillis[i] == intervalMillis) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No bars are kept for interval: " + intervalMillis);
+    }
+}
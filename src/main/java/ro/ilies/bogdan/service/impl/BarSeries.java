@@ -0,0 +1,155 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.Bar;
+import ro.ilies.bogdan.model.Trade;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring of the most recent bars of one stock for one interval, oldest first. Bars without trades are not kept.
+ *
+ * The slots are allocated up front and reused. Trades usually fall in the newest bar; a late trade is merged into
+ * its bar, which is inserted in order if it was missing, unless it is older than every bar of a full ring.
+ */
+class BarSeries {
+
+    private final String stockSymbol;
+    private final long intervalMillis;
+    private final MutableBar[] bars;
+    private int first;
+    private int size;
+
+    BarSeries(String stockSymbol, long intervalMillis, int capacity) {
+        this.stockSymbol = stockSymbol;
+        this.intervalMillis = intervalMillis;
+        this.bars = new MutableBar[capacity];
+        for (int i = 0; i < capacity; i++) {
+            bars[i] = new MutableBar();
+        }
+    }
+
+    synchronized void add(Trade trade) {
+        long start = Math.floorDiv(trade.getTimestamp(), intervalMillis) * intervalMillis;
+        MutableBar bar;
+        if (size > 0 && bar(size - 1).start == start) {
+            bar = bar(size - 1);
+        } else if (size == 0 || bar(size - 1).start < start) {
+            bar = append(start);
+        } else {
+            bar = barFor(start);
+            if (bar == null) {
+                return;
+            }
+        }
+        bar.add(trade);
+    }
+
+    private MutableBar bar(int index) {
+        return bars[(first + index) % bars.length];
+    }
+
+    private MutableBar append(long start) {
+        if (size == bars.length) {
+            first = (first + 1) % bars.length;
+            size--;
+        }
+        size++;
+        return bar(size - 1).reset(start);
+    }
+
+    private MutableBar barFor(long start) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bar(middle).start < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < size && bar(low).start == start) {
+            return bar(low);
+        }
+        if (size == bars.length) {
+            if (low == 0) {
+                return null;
+            }
+            first = (first + 1) % bars.length;
+            size--;
+            low--;
+        }
+        // the slot past the newest bar is free; rotate it down to its position
+        MutableBar free = bar(size);
+        for (int i = size; i > low; i--) {
+            bars[(first + i) % bars.length] = bar(i - 1);
+        }
+        bars[(first + low) % bars.length] = free;
+        size++;
+        return free.reset(start);
+    }
+
+    /**
+     * Up to count most recent bars, oldest first.
+     */
+    synchronized List<Bar> last(int count, NumericEngine numericEngine) {
+        int n = Math.min(count, size);
+        List<Bar> last = new ArrayList<>(n);
+        for (int i = size - n; i < size; i++) {
+            last.add(bar(i).toBar(stockSymbol, intervalMillis, numericEngine));
+        }
+        return last;
+    }
+
+    private static final class MutableBar {
+        private long start;
+        private long openTimestamp;
+        private long closeTimestamp;
+        private BigDecimal open;
+        private BigDecimal high;
+        private BigDecimal low;
+        private BigDecimal close;
+        private long volume;
+        private BigDecimal notional;
+
+        private MutableBar reset(long start) {
+            this.start = start;
+            this.volume = 0;
+            this.notional = BigDecimal.ZERO;
+            return this;
+        }
+
+        private void add(Trade trade) {
+            BigDecimal price = trade.getPrice();
+            long timestamp = trade.getTimestamp();
+            if (volume == 0) {
+                open = high = low = close = price;
+                openTimestamp = closeTimestamp = timestamp;
+            } else {
+                if (timestamp < openTimestamp) {
+                    open = price;
+                    openTimestamp = timestamp;
+                }
+                if (timestamp >= closeTimestamp) {
+                    close = price;
+                    closeTimestamp = timestamp;
+                }
+                if (price.compareTo(high) > 0) {
+                    high = price;
+                }
+                if (price.compareTo(low) < 0) {
+                    low = price;
+                }
+            }
+            volume += trade.getSharesQuantity();
+            notional = notional.add(price.multiply(BigDecimal.valueOf(trade.getSharesQuantity())));
+        }
+
+        private Bar toBar(String stockSymbol, long intervalMillis, NumericEngine numericEngine) {
+            return new Bar(stockSymbol, start, intervalMillis, open, high, low, close, volume,
+                    numericEngine.divide(notional, volume));
+        }
+    }
+}
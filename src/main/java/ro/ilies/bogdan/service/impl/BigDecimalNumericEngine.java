@@ -0,0 +1,36 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Plain {@link BigDecimal} arithmetic.
+ *
+ * A zero divisor is rejected up front: the exception {@link BigDecimal} would throw depends on the operands and, once
+ * compiled, may come without a message.
+ */
+public class BigDecimalNumericEngine implements NumericEngine {
+
+    private final int scale;
+
+    public BigDecimalNumericEngine(int scale) {
+        this.scale = scale;
+    }
+
+    @Override
+    public BigDecimal divide(BigDecimal dividend, BigDecimal divisor) {
+        if (divisor.signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return dividend.divide(divisor, scale, BigDecimal.ROUND_UP);
+    }
+
+    @Override
+    public BigDecimal divide(BigDecimal dividend, long divisor) {
+        return divide(dividend, BigDecimal.valueOf(divisor));
+    }
+
+    @Override
+    public BigDecimal multiplyAndDivide(BigDecimal multiplicand, BigDecimal multiplier, BigDecimal divisor) {
+        return divide(multiplicand.multiply(multiplier), divisor);
+    }
+}
@@ -0,0 +1,81 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.Stock;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a query for every position of a batch, recording failures instead of stopping at the first one. Batches of
+ * at least {@link #PARALLEL_THRESHOLD} positions are split across the common fork join pool.
+ */
+final class BulkQuery {
+
+    static final int PARALLEL_THRESHOLD = 1024;
+    private static final int LEAF_SIZE = 256;
+
+    @FunctionalInterface
+    interface IndexedQuery {
+        BigDecimal apply(int index);
+    }
+
+    @FunctionalInterface
+    interface StockQuery {
+        BigDecimal apply(int index, Stock stock, int symbolId);
+    }
+
+    private BulkQuery() {
+    }
+
+    static BulkQueryResult run(String[] stockSymbols, IndexedQuery query) {
+        int size = stockSymbols.length;
+        BigDecimal[] values = new BigDecimal[size];
+        RuntimeException[] failures = new RuntimeException[size];
+        if (size < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            runRange(query, values, failures, 0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(query, values, failures, 0, size));
+        }
+        return new BulkQueryResult(stockSymbols, values, failures);
+    }
+
+    private static void runRange(IndexedQuery query, BigDecimal[] values, RuntimeException[] failures,
+                                 int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                values[i] = query.apply(i);
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final IndexedQuery query;
+        private final BigDecimal[] values;
+        private final RuntimeException[] failures;
+        private final int from;
+        private final int to;
+
+        private RangeTask(IndexedQuery query, BigDecimal[] values, RuntimeException[] failures, int from, int to) {
+            this.query = query;
+            this.values = values;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                runRange(query, values, failures, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(query, values, failures, from, middle),
+                    new RangeTask(query, values, failures, middle, to));
+        }
+    }
+}
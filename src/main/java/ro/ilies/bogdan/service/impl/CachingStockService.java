@@ -0,0 +1,352 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeBatchReport;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.Subscription;
+import ro.ilies.bogdan.service.TradeListener;
+import ro.ilies.bogdan.service.UpdateListener;
+import ro.ilies.bogdan.service.VolumeWeightedPriceWindow;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches dividend yield, P/E ratio and volume weighted price results of another {@link StockService}
+ * in a bounded cache. Entries are spread by key over segments that are locked separately, each evicting
+ * its own least recently used entry, so concurrent lookups of different keys rarely wait for each other.
+ *
+ * Every symbol has a generation that is bumped when a stock or trade for it is added through this cache;
+ * cached entries of older generations are never hit again and age out of the cache. Stocks and trades that
+ * reach the delegate any other way, such as through a {@link TradeIngestionPipeline} built on the delegate
+ * or by writing to its repositories directly, never invalidate cached entries.
+ * Failed computations are not cached. Queries by symbol id share the entries of queries by symbol.
+ * Bulk queries, queries by trade side and queries over an interval go straight to the delegate.
+ */
+public class CachingStockService implements StockService {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private static final int MAXIMUM_SEGMENTS = 16;
+    private static final int MINIMUM_SEGMENT_SIZE = 256;
+
+    private final StockService delegate;
+    private final Segment[] segments;
+    private final ConcurrentMap<String, AtomicLong> generationsBySymbol = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingStockService(StockService delegate) {
+        this(delegate, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CachingStockService(StockService delegate, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache maximum size must be greater than 0.");
+        }
+        this.delegate = delegate;
+        // a power of two so that a segment is picked by masking the key hash
+        int segmentCount = Integer.highestOneBit(
+                Math.max(1, Math.min(MAXIMUM_SEGMENTS, maximumSize / MINIMUM_SEGMENT_SIZE)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    @Override
+    public BigDecimal dividendYield(String stockSymbol, BigDecimal marketPrice) {
+        return cached(Metric.DIVIDEND_YIELD, stockSymbol, marketPrice,
+                () -> delegate.dividendYield(stockSymbol, marketPrice));
+    }
+
+    @Override
+    public BigDecimal dividendYield(int symbolId, BigDecimal marketPrice) {
+        return cached(Metric.DIVIDEND_YIELD, delegate.stockSymbol(symbolId), marketPrice,
+                () -> delegate.dividendYield(symbolId, marketPrice));
+    }
+
+    @Override
+    public BigDecimal PERatio(String stockSymbol, BigDecimal marketPrice) {
+        return cached(Metric.PE_RATIO, stockSymbol, marketPrice,
+                () -> delegate.PERatio(stockSymbol, marketPrice));
+    }
+
+    @Override
+    public BigDecimal PERatio(int symbolId, BigDecimal marketPrice) {
+        return cached(Metric.PE_RATIO, delegate.stockSymbol(symbolId), marketPrice,
+                () -> delegate.PERatio(symbolId, marketPrice));
+    }
+
+    @Override
+    public BulkQueryResult dividendYields(String[] stockSymbols, BigDecimal[] marketPrices) {
+        return delegate.dividendYields(stockSymbols, marketPrices);
+    }
+
+    @Override
+    public BulkQueryResult PERatios(String[] stockSymbols, BigDecimal[] marketPrices) {
+        return delegate.PERatios(stockSymbols, marketPrices);
+    }
+
+    @Override
+    public int symbolId(String stockSymbol) {
+        return delegate.symbolId(stockSymbol);
+    }
+
+    @Override
+    public String stockSymbol(int symbolId) {
+        return delegate.stockSymbol(symbolId);
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp) {
+        return cached(Metric.VOLUME_WEIGHTED_PRICE, stockSymbol, timestamp,
+                () -> delegate.volumeWeightedStockPriceAfter(stockSymbol, timestamp));
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(int symbolId, long timestamp) {
+        return cached(Metric.VOLUME_WEIGHTED_PRICE, delegate.stockSymbol(symbolId), timestamp,
+                () -> delegate.volumeWeightedStockPriceAfter(symbolId, timestamp));
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        return delegate.volumeWeightedStockPriceAfter(stockSymbol, timestamp, side);
+    }
+
+    @Override
+    public long tradedVolumeAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        return delegate.tradedVolumeAfter(stockSymbol, timestamp, side);
+    }
+
+    @Override
+    public BigDecimal orderImbalanceAfter(String stockSymbol, long timestamp) {
+        return delegate.orderImbalanceAfter(stockSymbol, timestamp);
+    }
+
+    @Override
+    public BulkQueryResult volumeWeightedStockPricesAfter(String[] stockSymbols, long timestamp) {
+        return delegate.volumeWeightedStockPricesAfter(stockSymbols, timestamp);
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceBetween(String stockSymbol, long from, long to) {
+        return delegate.volumeWeightedStockPriceBetween(stockSymbol, from, to);
+    }
+
+    @Override
+    public PriceRange priceRangeBetween(String stockSymbol, long from, long to) {
+        return delegate.priceRangeBetween(stockSymbol, from, to);
+    }
+
+    private BigDecimal cached(Metric metric, String stockSymbol, Object argument, Supplier<BigDecimal> computation) {
+        if (stockSymbol == null || argument == null) {
+            // let the delegate report invalid arguments
+            return computation.get();
+        }
+        CacheKey key = new CacheKey(metric, stockSymbol, argument, generation(stockSymbol));
+        Segment segment = segmentFor(key);
+        BigDecimal value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = computation.get();
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    private Segment segmentFor(CacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private long generation(String stockSymbol) {
+        AtomicLong generation = generationsBySymbol.get(stockSymbol);
+        return generation == null ? 0 : generation.get();
+    }
+
+    private void invalidate(String stockSymbol) {
+        generationsBySymbol.computeIfAbsent(stockSymbol, symbol -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void addTrade(Trade trade) {
+        try {
+            delegate.addTrade(trade);
+        } finally {
+            invalidate(trade.getStockSymbol());
+        }
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Collection<Trade> trades) {
+        return addTrades(trades.toArray(new Trade[0]));
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Trade[] trades) {
+        try {
+            return delegate.addTrades(trades);
+        } finally {
+            Arrays.stream(trades == null ? new Trade[0] : trades)
+                    .filter(Objects::nonNull)
+                    .map(Trade::getStockSymbol)
+                    .distinct()
+                    .forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public VolumeWeightedPriceWindow trackVolumeWeightedStockPrice(String stockSymbol, long windowMillis) {
+        return delegate.trackVolumeWeightedStockPrice(stockSymbol, windowMillis);
+    }
+
+    @Override
+    public Subscription subscribeVolumeWeightedStockPrice(String stockSymbol, long windowMillis,
+                                                          UpdateListener listener) {
+        return delegate.subscribeVolumeWeightedStockPrice(stockSymbol, windowMillis, listener);
+    }
+
+    @Override
+    public Subscription subscribeGBCEAllShareIndex(UpdateListener listener) {
+        return delegate.subscribeGBCEAllShareIndex(listener);
+    }
+
+    @Override
+    public void addTradeListener(TradeListener listener) {
+        delegate.addTradeListener(listener);
+    }
+
+    @Override
+    public void removeTradeListener(TradeListener listener) {
+        delegate.removeTradeListener(listener);
+    }
+
+    @Override
+    public BigDecimal GBCEAllShareIndex() {
+        return delegate.GBCEAllShareIndex();
+    }
+
+    @Override
+    public BigDecimal exactGBCEAllShareIndex() {
+        return delegate.exactGBCEAllShareIndex();
+    }
+
+    @Override
+    public BigDecimal GBCEAllShareIndex(MathContext mathContext) {
+        return delegate.GBCEAllShareIndex(mathContext);
+    }
+
+    @Override
+    public void register(Stock stock) {
+        try {
+            delegate.register(stock);
+        } finally {
+            invalidate(stock.getStockSymbol());
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private final class Segment extends LinkedHashMap<CacheKey, BigDecimal> {
+        private final int maximumSize;
+
+        private Segment(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, BigDecimal> eldest) {
+            if (size() > maximumSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private enum Metric {
+        DIVIDEND_YIELD,
+        PE_RATIO,
+        VOLUME_WEIGHTED_PRICE;
+    }
+
+    private static final class CacheKey {
+        private final Metric metric;
+        private final String stockSymbol;
+        private final Object argument;
+        private final long generation;
+
+        private CacheKey(Metric metric, String stockSymbol, Object argument, long generation) {
+            this.metric = metric;
+            this.stockSymbol = stockSymbol;
+            this.argument = argument;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            CacheKey cacheKey = (CacheKey) o;
+
+            if (generation != cacheKey.generation) return false;
+            if (metric != cacheKey.metric) return false;
+            if (!stockSymbol.equals(cacheKey.stockSymbol)) return false;
+            return argument.equals(cacheKey.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = metric.hashCode();
+            result = 31 * result + stockSymbol.hashCode();
+            result = 31 * result + argument.hashCode();
+            result = 31 * result + (int) (generation ^ (generation >>> 32));
+            return result;
+        }
+    }
+}
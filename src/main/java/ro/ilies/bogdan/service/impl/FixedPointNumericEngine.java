@@ -0,0 +1,110 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Computes quotients on the unscaled long values of the operands, allocating only the result.
+ *
+ * The unscaled value of an operand of at most 18 digits is read through a scale 0 copy, which escape analysis removes
+ * once the caller is compiled. Wider operands, scale differences past 18 digits, intermediate overflows and division
+ * by zero are handed to {@link BigDecimalNumericEngine}, so results and exceptions are identical to it.
+ */
+public class FixedPointNumericEngine implements NumericEngine {
+
+    private static final int MAX_DIGITS = 18;
+    private static final int MAX_BITS = 62;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int scale;
+    private final NumericEngine fallback;
+
+    public FixedPointNumericEngine(int scale) {
+        this.scale = scale;
+        this.fallback = new BigDecimalNumericEngine(scale);
+    }
+
+    @Override
+    public BigDecimal divide(BigDecimal dividend, BigDecimal divisor) {
+        if (divisor.signum() == 0 || dividend.precision() > MAX_DIGITS || divisor.precision() > MAX_DIGITS) {
+            return fallback.divide(dividend, divisor);
+        }
+        try {
+            return BigDecimal.valueOf(divide(unscaledValue(dividend), dividend.scale(),
+                    unscaledValue(divisor), divisor.scale()), scale);
+        } catch (ArithmeticException e) {
+            return fallback.divide(dividend, divisor);
+        }
+    }
+
+    @Override
+    public BigDecimal divide(BigDecimal dividend, long divisor) {
+        if (divisor == 0 || dividend.precision() > MAX_DIGITS || Math.abs(divisor) >= 1L << MAX_BITS) {
+            return fallback.divide(dividend, divisor);
+        }
+        try {
+            return BigDecimal.valueOf(divide(unscaledValue(dividend), dividend.scale(), divisor, 0), scale);
+        } catch (ArithmeticException e) {
+            return fallback.divide(dividend, divisor);
+        }
+    }
+
+    @Override
+    public BigDecimal multiplyAndDivide(BigDecimal multiplicand, BigDecimal multiplier, BigDecimal divisor) {
+        if (divisor.signum() == 0 || multiplicand.precision() > MAX_DIGITS || multiplier.precision() > MAX_DIGITS
+                || divisor.precision() > MAX_DIGITS) {
+            return fallback.multiplyAndDivide(multiplicand, multiplier, divisor);
+        }
+        try {
+            long product = Math.multiplyExact(unscaledValue(multiplicand), unscaledValue(multiplier));
+            if (Math.abs(product) >= 1L << MAX_BITS) {
+                return fallback.multiplyAndDivide(multiplicand, multiplier, divisor);
+            }
+            int productScale = Math.addExact(multiplicand.scale(), multiplier.scale());
+            return BigDecimal.valueOf(divide(product, productScale, unscaledValue(divisor), divisor.scale()), scale);
+        } catch (ArithmeticException e) {
+            return fallback.multiplyAndDivide(multiplicand, multiplier, divisor);
+        }
+    }
+
+    /**
+     * Unscaled value of given number of at most 18 digits. Unlike {@link BigDecimal#unscaledValue()}, it does not
+     * build a {@link java.math.BigInteger}, and the scale 0 copy it reads does not escape.
+     */
+    private static long unscaledValue(BigDecimal number) {
+        return number.scaleByPowerOfTen(number.scale()).longValueExact();
+    }
+
+    /**
+     * Unscaled value of (dividend * 10^-dividendScale) / (divisor * 10^-divisorScale) at this engine's scale,
+     * rounded away from zero, for a non-zero divisor. Throws {@link ArithmeticException} whenever long arithmetic is
+     * not enough.
+     */
+    private long divide(long dividend, int dividendScale, long divisor, int divisorScale) {
+        long exponent = (long) scale + divisorScale - dividendScale;
+        if (Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Scale difference too large.");
+        }
+        long numerator = dividend;
+        long denominator = divisor;
+        if (exponent >= 0) {
+            numerator = Math.multiplyExact(numerator, POWERS_OF_TEN[(int) exponent]);
+        } else {
+            denominator = Math.multiplyExact(denominator, POWERS_OF_TEN[(int) -exponent]);
+        }
+        if (numerator == Long.MIN_VALUE) {
+            throw new ArithmeticException("Quotient may overflow.");
+        }
+        long quotient = numerator / denominator;
+        if (numerator % denominator != 0) {
+            quotient += Long.signum(numerator) * Long.signum(denominator);
+        }
+        return quotient;
+    }
+}
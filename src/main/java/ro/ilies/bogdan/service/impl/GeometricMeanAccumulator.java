@@ -0,0 +1,66 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Keeps the geometric mean of a growing set of values as a running, compensated sum of their natural logarithms,
+ * so adding a value and reading the mean both take constant time.
+ *
+ * The mean is rounded to {@link #SIGNIFICANT_DIGITS} significant digits, which adds a relative error of at most
+ * 5e-13. Double logarithms are exact to about 1e-16 and Kahan summation keeps the error of the sum independent of
+ * the number of values, so the relative error of the mean stays below 1e-12.
+ */
+class GeometricMeanAccumulator {
+
+    static final int SIGNIFICANT_DIGITS = 13;
+    private static final MathContext MEAN_CONTEXT = new MathContext(SIGNIFICANT_DIGITS, RoundingMode.HALF_EVEN);
+
+    private volatile State state = new State(0, 0d, 0d, 0);
+
+    synchronized void add(BigDecimal value) {
+        State current = state;
+        if (value.signum() <= 0) {
+            state = new State(current.count + 1, current.logSum, current.compensation, current.nonPositiveCount + 1);
+            return;
+        }
+        // Kahan summation
+        double term = Math.log(value.doubleValue()) - current.compensation;
+        double logSum = current.logSum + term;
+        state = new State(current.count + 1, logSum, (logSum - current.logSum) - term, current.nonPositiveCount);
+    }
+
+    int count() {
+        return state.count;
+    }
+
+    /**
+     * Whether a zero or negative value was added, for which the logarithm is undefined.
+     */
+    boolean hasNonPositiveValues() {
+        return state.nonPositiveCount > 0;
+    }
+
+    BigDecimal geometricMean() {
+        State current = state;
+        if (current.count == 0 || current.nonPositiveCount > 0) {
+            throw new IllegalStateException("Geometric mean is only kept for a non empty set of positive values.");
+        }
+        return new BigDecimal(Math.exp(current.logSum / current.count), MEAN_CONTEXT);
+    }
+
+    private static class State {
+        private final int count;
+        private final double logSum;
+        private final double compensation;
+        private final int nonPositiveCount;
+
+        private State(int count, double logSum, double compensation, int nonPositiveCount) {
+            this.count = count;
+            this.logSum = logSum;
+            this.compensation = compensation;
+            this.nonPositiveCount = nonPositiveCount;
+        }
+    }
+}
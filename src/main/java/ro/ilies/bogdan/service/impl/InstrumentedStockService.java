@@ -0,0 +1,414 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeBatchReport;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.Subscription;
+import ro.ilies.bogdan.service.TradeListener;
+import ro.ilies.bogdan.service.UpdateListener;
+import ro.ilies.bogdan.service.VolumeWeightedPriceWindow;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Records calls, failures by exception type and latency of the operations of another {@link StockService}.
+ * Queries by symbol id are recorded with their queries by symbol, and all bulk queries as {@link Operation#BULK_QUERY},
+ * failing only when the whole batch does. Both full recomputations of the index are recorded as
+ * {@link Operation#EXACT_GBCE_ALL_SHARE_INDEX}. Past a thread's first call of an operation, recording a successful
+ * call does not allocate.
+ *
+ * Every call is counted, but by default only one call in {@value #DEFAULT_SAMPLING_INTERVAL} of each thread has its
+ * latency measured, which keeps the overhead on the cheapest queries to a few nanoseconds.
+ */
+public class InstrumentedStockService implements StockService {
+
+    public enum Operation {
+        DIVIDEND_YIELD,
+        PE_RATIO,
+        ADD_TRADE,
+        ADD_TRADES,
+        VOLUME_WEIGHTED_PRICE,
+        TRADED_VOLUME,
+        ORDER_IMBALANCE,
+        PRICE_RANGE,
+        BULK_QUERY,
+        GBCE_ALL_SHARE_INDEX,
+        EXACT_GBCE_ALL_SHARE_INDEX,
+        REGISTER
+    }
+
+    public static final int DEFAULT_SAMPLING_INTERVAL = 64;
+
+    private final StockService delegate;
+    private final OperationMetrics dividendYield;
+    private final OperationMetrics peRatio;
+    private final OperationMetrics addTrade;
+    private final OperationMetrics addTrades;
+    private final OperationMetrics volumeWeightedPrice;
+    private final OperationMetrics tradedVolume;
+    private final OperationMetrics orderImbalance;
+    private final OperationMetrics priceRange;
+    private final OperationMetrics bulkQuery;
+    private final OperationMetrics gbceAllShareIndex;
+    private final OperationMetrics exactGbceAllShareIndex;
+    private final OperationMetrics register;
+    private final Map<Operation, OperationMetrics> metrics = new EnumMap<>(Operation.class);
+
+    public InstrumentedStockService(StockService delegate) {
+        this(delegate, DEFAULT_SAMPLING_INTERVAL);
+    }
+
+    /**
+     * @param samplingInterval number of calls of a thread per call whose latency is measured; 1 measures every call
+     */
+    public InstrumentedStockService(StockService delegate, int samplingInterval) {
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be greater than 0.");
+        }
+        this.delegate = delegate;
+        this.dividendYield = new OperationMetrics(samplingInterval);
+        this.peRatio = new OperationMetrics(samplingInterval);
+        this.addTrade = new OperationMetrics(samplingInterval);
+        this.addTrades = new OperationMetrics(samplingInterval);
+        this.volumeWeightedPrice = new OperationMetrics(samplingInterval);
+        this.tradedVolume = new OperationMetrics(samplingInterval);
+        this.orderImbalance = new OperationMetrics(samplingInterval);
+        this.priceRange = new OperationMetrics(samplingInterval);
+        this.bulkQuery = new OperationMetrics(samplingInterval);
+        this.gbceAllShareIndex = new OperationMetrics(samplingInterval);
+        this.exactGbceAllShareIndex = new OperationMetrics(samplingInterval);
+        this.register = new OperationMetrics(samplingInterval);
+        metrics.put(Operation.DIVIDEND_YIELD, dividendYield);
+        metrics.put(Operation.PE_RATIO, peRatio);
+        metrics.put(Operation.ADD_TRADE, addTrade);
+        metrics.put(Operation.ADD_TRADES, addTrades);
+        metrics.put(Operation.VOLUME_WEIGHTED_PRICE, volumeWeightedPrice);
+        metrics.put(Operation.TRADED_VOLUME, tradedVolume);
+        metrics.put(Operation.ORDER_IMBALANCE, orderImbalance);
+        metrics.put(Operation.PRICE_RANGE, priceRange);
+        metrics.put(Operation.BULK_QUERY, bulkQuery);
+        metrics.put(Operation.GBCE_ALL_SHARE_INDEX, gbceAllShareIndex);
+        metrics.put(Operation.EXACT_GBCE_ALL_SHARE_INDEX, exactGbceAllShareIndex);
+        metrics.put(Operation.REGISTER, register);
+    }
+
+    public OperationMetrics getMetrics(Operation operation) {
+        return metrics.get(operation);
+    }
+
+    @Override
+    public BigDecimal dividendYield(String stockSymbol, BigDecimal marketPrice) {
+        long start = dividendYield.start();
+        try {
+            return delegate.dividendYield(stockSymbol, marketPrice);
+        } catch (RuntimeException e) {
+            dividendYield.recordError(e);
+            throw e;
+        } finally {
+            dividendYield.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal dividendYield(int symbolId, BigDecimal marketPrice) {
+        long start = dividendYield.start();
+        try {
+            return delegate.dividendYield(symbolId, marketPrice);
+        } catch (RuntimeException e) {
+            dividendYield.recordError(e);
+            throw e;
+        } finally {
+            dividendYield.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal PERatio(String stockSymbol, BigDecimal marketPrice) {
+        long start = peRatio.start();
+        try {
+            return delegate.PERatio(stockSymbol, marketPrice);
+        } catch (RuntimeException e) {
+            peRatio.recordError(e);
+            throw e;
+        } finally {
+            peRatio.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal PERatio(int symbolId, BigDecimal marketPrice) {
+        long start = peRatio.start();
+        try {
+            return delegate.PERatio(symbolId, marketPrice);
+        } catch (RuntimeException e) {
+            peRatio.recordError(e);
+            throw e;
+        } finally {
+            peRatio.record(start);
+        }
+    }
+
+    @Override
+    public BulkQueryResult dividendYields(String[] stockSymbols, BigDecimal[] marketPrices) {
+        long start = bulkQuery.start();
+        try {
+            return delegate.dividendYields(stockSymbols, marketPrices);
+        } catch (RuntimeException e) {
+            bulkQuery.recordError(e);
+            throw e;
+        } finally {
+            bulkQuery.record(start);
+        }
+    }
+
+    @Override
+    public BulkQueryResult PERatios(String[] stockSymbols, BigDecimal[] marketPrices) {
+        long start = bulkQuery.start();
+        try {
+            return delegate.PERatios(stockSymbols, marketPrices);
+        } catch (RuntimeException e) {
+            bulkQuery.recordError(e);
+            throw e;
+        } finally {
+            bulkQuery.record(start);
+        }
+    }
+
+    @Override
+    public int symbolId(String stockSymbol) {
+        return delegate.symbolId(stockSymbol);
+    }
+
+    @Override
+    public String stockSymbol(int symbolId) {
+        return delegate.stockSymbol(symbolId);
+    }
+
+    @Override
+    public void addTrade(Trade trade) {
+        long start = addTrade.start();
+        try {
+            delegate.addTrade(trade);
+        } catch (RuntimeException e) {
+            addTrade.recordError(e);
+            throw e;
+        } finally {
+            addTrade.record(start);
+        }
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Collection<Trade> trades) {
+        long start = addTrades.start();
+        try {
+            return delegate.addTrades(trades);
+        } catch (RuntimeException e) {
+            addTrades.recordError(e);
+            throw e;
+        } finally {
+            addTrades.record(start);
+        }
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Trade[] trades) {
+        long start = addTrades.start();
+        try {
+            return delegate.addTrades(trades);
+        } catch (RuntimeException e) {
+            addTrades.recordError(e);
+            throw e;
+        } finally {
+            addTrades.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp) {
+        long start = volumeWeightedPrice.start();
+        try {
+            return delegate.volumeWeightedStockPriceAfter(stockSymbol, timestamp);
+        } catch (RuntimeException e) {
+            volumeWeightedPrice.recordError(e);
+            throw e;
+        } finally {
+            volumeWeightedPrice.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(int symbolId, long timestamp) {
+        long start = volumeWeightedPrice.start();
+        try {
+            return delegate.volumeWeightedStockPriceAfter(symbolId, timestamp);
+        } catch (RuntimeException e) {
+            volumeWeightedPrice.recordError(e);
+            throw e;
+        } finally {
+            volumeWeightedPrice.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        long start = volumeWeightedPrice.start();
+        try {
+            return delegate.volumeWeightedStockPriceAfter(stockSymbol, timestamp, side);
+        } catch (RuntimeException e) {
+            volumeWeightedPrice.recordError(e);
+            throw e;
+        } finally {
+            volumeWeightedPrice.record(start);
+        }
+    }
+
+    @Override
+    public long tradedVolumeAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        long start = tradedVolume.start();
+        try {
+            return delegate.tradedVolumeAfter(stockSymbol, timestamp, side);
+        } catch (RuntimeException e) {
+            tradedVolume.recordError(e);
+            throw e;
+        } finally {
+            tradedVolume.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal orderImbalanceAfter(String stockSymbol, long timestamp) {
+        long start = orderImbalance.start();
+        try {
+            return delegate.orderImbalanceAfter(stockSymbol, timestamp);
+        } catch (RuntimeException e) {
+            orderImbalance.recordError(e);
+            throw e;
+        } finally {
+            orderImbalance.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceBetween(String stockSymbol, long from, long to) {
+        long start = volumeWeightedPrice.start();
+        try {
+            return delegate.volumeWeightedStockPriceBetween(stockSymbol, from, to);
+        } catch (RuntimeException e) {
+            volumeWeightedPrice.recordError(e);
+            throw e;
+        } finally {
+            volumeWeightedPrice.record(start);
+        }
+    }
+
+    @Override
+    public PriceRange priceRangeBetween(String stockSymbol, long from, long to) {
+        long start = priceRange.start();
+        try {
+            return delegate.priceRangeBetween(stockSymbol, from, to);
+        } catch (RuntimeException e) {
+            priceRange.recordError(e);
+            throw e;
+        } finally {
+            priceRange.record(start);
+        }
+    }
+
+    @Override
+    public BulkQueryResult volumeWeightedStockPricesAfter(String[] stockSymbols, long timestamp) {
+        long start = bulkQuery.start();
+        try {
+            return delegate.volumeWeightedStockPricesAfter(stockSymbols, timestamp);
+        } catch (RuntimeException e) {
+            bulkQuery.recordError(e);
+            throw e;
+        } finally {
+            bulkQuery.record(start);
+        }
+    }
+
+    @Override
+    public VolumeWeightedPriceWindow trackVolumeWeightedStockPrice(String stockSymbol, long windowMillis) {
+        return delegate.trackVolumeWeightedStockPrice(stockSymbol, windowMillis);
+    }
+
+    @Override
+    public BigDecimal GBCEAllShareIndex() {
+        long start = gbceAllShareIndex.start();
+        try {
+            return delegate.GBCEAllShareIndex();
+        } catch (RuntimeException e) {
+            gbceAllShareIndex.recordError(e);
+            throw e;
+        } finally {
+            gbceAllShareIndex.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal exactGBCEAllShareIndex() {
+        long start = exactGbceAllShareIndex.start();
+        try {
+            return delegate.exactGBCEAllShareIndex();
+        } catch (RuntimeException e) {
+            exactGbceAllShareIndex.recordError(e);
+            throw e;
+        } finally {
+            exactGbceAllShareIndex.record(start);
+        }
+    }
+
+    @Override
+    public BigDecimal GBCEAllShareIndex(MathContext mathContext) {
+        long start = exactGbceAllShareIndex.start();
+        try {
+            return delegate.GBCEAllShareIndex(mathContext);
+        } catch (RuntimeException e) {
+            exactGbceAllShareIndex.recordError(e);
+            throw e;
+        } finally {
+            exactGbceAllShareIndex.record(start);
+        }
+    }
+
+    @Override
+    public void register(Stock stock) {
+        long start = register.start();
+        try {
+            delegate.register(stock);
+        } catch (RuntimeException e) {
+            register.recordError(e);
+            throw e;
+        } finally {
+            register.record(start);
+        }
+    }
+
+    @Override
+    public Subscription subscribeVolumeWeightedStockPrice(String stockSymbol, long windowMillis,
+                                                          UpdateListener listener) {
+        return delegate.subscribeVolumeWeightedStockPrice(stockSymbol, windowMillis, listener);
+    }
+
+    @Override
+    public Subscription subscribeGBCEAllShareIndex(UpdateListener listener) {
+        return delegate.subscribeGBCEAllShareIndex(listener);
+    }
+
+    @Override
+    public void addTradeListener(TradeListener listener) {
+        delegate.addTradeListener(listener);
+    }
+
+    @Override
+    public void removeTradeListener(TradeListener listener) {
+        delegate.removeTradeListener(listener);
+    }
+}
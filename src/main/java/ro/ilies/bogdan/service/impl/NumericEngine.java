@@ -0,0 +1,19 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmetic used by {@link StockServiceImpl} for its ratios. Every quotient has the engine's scale and is rounded
+ * away from zero, as {@link BigDecimal#divide(BigDecimal, int, int)} with {@link BigDecimal#ROUND_UP} would.
+ */
+public interface NumericEngine {
+
+    BigDecimal divide(BigDecimal dividend, BigDecimal divisor);
+
+    BigDecimal divide(BigDecimal dividend, long divisor);
+
+    /**
+     * (multiplicand * multiplier) / divisor, with the product computed exactly.
+     */
+    BigDecimal multiplyAndDivide(BigDecimal multiplicand, BigDecimal multiplier, BigDecimal divisor);
+}
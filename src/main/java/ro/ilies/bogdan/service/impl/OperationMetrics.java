@@ -0,0 +1,110 @@
+package ro.ilies.bogdan.service.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls, failures by exception type and latency in nanoseconds of one {@link InstrumentedStockService} operation.
+ *
+ * Calls and failures are counted exactly. Each thread counts its calls in a counter of its own, written without a
+ * locked instruction and summed when read, and measures the latency of every n-th of them only: reading the clock
+ * twice costs more than the cheapest operations themselves, so unsampled calls never read it.
+ */
+public class OperationMetrics {
+
+    // start of a call whose latency is not measured
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final int samplingInterval;
+    private final Queue<ThreadCalls> callsByThread = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadCalls> threadCalls = ThreadLocal.withInitial(this::newThreadCalls);
+    private final ConcurrentMap<Class<? extends Throwable>, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(int samplingInterval) {
+        this.samplingInterval = samplingInterval;
+    }
+
+    private ThreadCalls newThreadCalls() {
+        ThreadCalls calls = new ThreadCalls(samplingInterval);
+        callsByThread.add(calls);
+        return calls;
+    }
+
+    /**
+     * Counts a call and returns its start, to be passed to {@link #record(long)} when it completes.
+     */
+    long start() {
+        ThreadCalls calls = threadCalls.get();
+        // only the owning thread writes its counter, so an ordered store is enough
+        calls.count.lazySet(calls.count.get() + 1);
+        if (--calls.untilSample > 0) {
+            return NOT_SAMPLED;
+        }
+        calls.untilSample = samplingInterval;
+        return System.nanoTime();
+    }
+
+    void record(long start) {
+        if (start != NOT_SAMPLED) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    void recordError(Throwable error) {
+        LongAdder errors = errorsByType.get(error.getClass());
+        if (errors == null) {
+            errors = errorsByType.computeIfAbsent(error.getClass(), type -> new LongAdder());
+        }
+        errors.increment();
+    }
+
+    /**
+     * Calls made, including failed and ongoing ones.
+     */
+    public long getCallCount() {
+        long total = 0;
+        for (ThreadCalls calls : callsByThread) {
+            total += calls.count.get();
+        }
+        return total;
+    }
+
+    public long getErrorCount() {
+        return errorsByType.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long getErrorCount(Class<? extends Throwable> type) {
+        LongAdder errors = errorsByType.get(type);
+        return errors == null ? 0 : errors.sum();
+    }
+
+    public Map<Class<? extends Throwable>, Long> getErrorCounts() {
+        Map<Class<? extends Throwable>, Long> errorCounts = new HashMap<>();
+        errorsByType.forEach((type, errors) -> errorCounts.put(type, errors.sum()));
+        return errorCounts;
+    }
+
+    /**
+     * Latencies of the sampled calls.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private static final class ThreadCalls {
+
+        private final AtomicLong count = new AtomicLong();
+        private int untilSample;
+
+        private ThreadCalls(int samplingInterval) {
+            this.untilSample = samplingInterval;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.TradeListener;
+import ro.ilies.bogdan.service.VolumeWeightedPriceWindow;
+import ro.ilies.bogdan.service.exception.NoTradeFoundException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the notional and quantity of the window's trades in a ring of time buckets, with the totals of the live
+ * buckets alongside. Recording a trade adds it to its bucket and to the totals; as the clock moves, whole buckets
+ * leave the window and are subtracted from the totals.
+ *
+ * A bucket stays in the window until all of it is older than the window, so the value may include trades up to
+ * one bucket, a thousandth of the window, older than {@link #current()} asks for.
+ */
+class SlidingWindowVolumeWeightedPrice implements VolumeWeightedPriceWindow, TradeListener {
+
+    static final int BUCKETS_PER_WINDOW = 1000;
+
+    private final String stockSymbol;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final NumericEngine numericEngine;
+    private final LongSupplier clock;
+    private final Runnable onClose;
+    private final long[] bucketIndexes;
+    private final BigDecimal[] bucketNotionals;
+    private final long[] bucketQuantities;
+    private long oldestLiveBucketIndex = Long.MIN_VALUE;
+    private BigDecimal notional = BigDecimal.ZERO;
+    private long quantity;
+    // trades recorded while seeding; null once seeded
+    private List<Trade> pendingTrades = new ArrayList<>();
+
+    SlidingWindowVolumeWeightedPrice(String stockSymbol, long windowMillis, NumericEngine numericEngine,
+                                     LongSupplier clock, Runnable onClose) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window length must be greater than 0.");
+        }
+        this.stockSymbol = stockSymbol;
+        this.windowMillis = windowMillis;
+        this.bucketMillis = (windowMillis + BUCKETS_PER_WINDOW - 1) / BUCKETS_PER_WINDOW;
+        this.numericEngine = numericEngine;
+        this.clock = clock;
+        this.onClose = onClose;
+        int buckets = (int) ((windowMillis + bucketMillis - 1) / bucketMillis) + 1;
+        this.bucketIndexes = new long[buckets];
+        this.bucketNotionals = new BigDecimal[buckets];
+        this.bucketQuantities = new long[buckets];
+        Arrays.fill(bucketIndexes, Long.MIN_VALUE);
+        Arrays.fill(bucketNotionals, BigDecimal.ZERO);
+    }
+
+    /**
+     * Adds the trades already stored for the window, then those recorded since the window was registered as a
+     * listener. The stored trades must be a snapshot taken while no trade of the stock was between being stored and
+     * being passed to the listeners, so that no trade is in both.
+     */
+    synchronized void seed(Iterator<Trade> storedTrades) {
+        storedTrades.forEachRemaining(this::add);
+        List<Trade> recorded = pendingTrades;
+        pendingTrades = null;
+        recorded.forEach(this::add);
+    }
+
+    @Override
+    public synchronized void onTrade(Trade trade) {
+        if (!stockSymbol.equals(trade.getStockSymbol())) {
+            return;
+        }
+        if (pendingTrades != null) {
+            pendingTrades.add(trade);
+        } else {
+            add(trade);
+        }
+    }
+
+    private void add(Trade trade) {
+        long bucketIndex = Math.floorDiv(trade.getTimestamp(), bucketMillis);
+        expire(clock.getAsLong());
+        if (bucketIndex < oldestLiveBucketIndex) {
+            return;
+        }
+        int slot = slotOf(bucketIndex);
+        if (bucketIndexes[slot] != bucketIndex) {
+            removeBucket(slot);
+            bucketIndexes[slot] = bucketIndex;
+        }
+        BigDecimal tradeNotional = trade.getPrice().multiply(BigDecimal.valueOf(trade.getSharesQuantity()));
+        bucketNotionals[slot] = bucketNotionals[slot].add(tradeNotional);
+        bucketQuantities[slot] += trade.getSharesQuantity();
+        notional = notional.add(tradeNotional);
+        quantity += trade.getSharesQuantity();
+    }
+
+    // drops the buckets that ended before the window starts
+    private void expire(long now) {
+        long oldestLive = Math.floorDiv(now - windowMillis, bucketMillis);
+        if (oldestLive <= oldestLiveBucketIndex) {
+            return;
+        }
+        if (oldestLiveBucketIndex == Long.MIN_VALUE || oldestLive - oldestLiveBucketIndex >= bucketIndexes.length) {
+            for (int slot = 0; slot < bucketIndexes.length; slot++) {
+                if (bucketIndexes[slot] < oldestLive) {
+                    removeBucket(slot);
+                }
+            }
+        } else {
+            for (long bucketIndex = oldestLiveBucketIndex; bucketIndex < oldestLive; bucketIndex++) {
+                int slot = slotOf(bucketIndex);
+                if (bucketIndexes[slot] == bucketIndex) {
+                    removeBucket(slot);
+                }
+            }
+        }
+        oldestLiveBucketIndex = oldestLive;
+    }
+
+    private void removeBucket(int slot) {
+        notional = notional.subtract(bucketNotionals[slot]);
+        quantity -= bucketQuantities[slot];
+        bucketIndexes[slot] = Long.MIN_VALUE;
+        bucketNotionals[slot] = BigDecimal.ZERO;
+        bucketQuantities[slot] = 0;
+    }
+
+    private int slotOf(long bucketIndex) {
+        return (int) Math.floorMod(bucketIndex, (long) bucketIndexes.length);
+    }
+
+    @Override
+    public String getStockSymbol() {
+        return stockSymbol;
+    }
+
+    @Override
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    @Override
+    public synchronized BigDecimal current() {
+        expire(clock.getAsLong());
+        if (quantity == 0) {
+            throw new NoTradeFoundException("No trade has been made in the window.");
+        }
+        return numericEngine.divide(notional, quantity);
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+}
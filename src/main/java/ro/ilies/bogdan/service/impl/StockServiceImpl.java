@@ -1,115 +1,504 @@
 package ro.ilies.bogdan.service.impl;
 
 import ch.obermuhlner.math.big.BigDecimalMath;
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Stock;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.model.TradeBatchReport;
+import ro.ilies.bogdan.model.TradeRejection;
 import ro.ilies.bogdan.repository.exception.AlreadyExistsException;
 import ro.ilies.bogdan.repository.stock.StockEntityManager;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 import ro.ilies.bogdan.repository.trade.TradeEntityManager;
 import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.Subscription;
+import ro.ilies.bogdan.service.TradeListener;
+import ro.ilies.bogdan.service.UpdateListener;
+import ro.ilies.bogdan.service.VolumeWeightedPriceWindow;
 import ro.ilies.bogdan.service.exception.DuplicateStockException;
 import ro.ilies.bogdan.service.exception.NoStockFoundException;
 import ro.ilies.bogdan.service.exception.NoTradeFoundException;
 import ro.ilies.bogdan.service.exception.StockDoesNotExistException;
+import ro.ilies.bogdan.service.exception.TradeListenerException;
 
+import java.io.Closeable;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
 
 /**
  * Created by bogdan-ilies on 25.02.2018.
+ *
+ * Queries by symbol id go straight to the repositories' id indexes when both repositories share a
+ * {@link SymbolDictionary}; otherwise trades are looked up by symbol.
+ *
+ * Subscribers are pushed updates by an {@link UpdatePublisher}. Unless one is given, the service creates its own,
+ * which delivers on a single thread, and {@link #close()} stops it.
  */
-public class StockServiceImpl implements StockService {
-    private static final int PRECISION_DIGITS = 5;
+public class StockServiceImpl implements StockService, Closeable {
+    static final int PRECISION_DIGITS = 5;
+    private static final Object GBCE_ALL_SHARE_INDEX_TOPIC = new Object();
+    // extra digits the logarithms are computed with, so that their sum is still accurate to the requested precision
+    private static final int GUARD_DIGITS = 5;
+    // par values multiplied together before taking a logarithm, which costs far more than the multiplications
+    private static final int LOG_BLOCK_SIZE = 256;
+    private static final int RECORDING_LOCK_STRIPES = 64;
 
     private final StockEntityManager stockEntityManager;
     private final TradeEntityManager tradeEntityManager;
+    private final NumericEngine numericEngine;
+    private final GeometricMeanAccumulator parValuesGeometricMean;
+    private final boolean sharedSymbolIds;
+    private final List<TradeListener> tradeListeners = new CopyOnWriteArrayList<>();
+    // held shared while a symbol's trades are stored and passed to the listeners, exclusively while a new listener
+    // snapshots that symbol's stored trades, so that each trade is either in the snapshot or passed to the listener
+    private final ReadWriteLock[] recordingLocks = new ReadWriteLock[RECORDING_LOCK_STRIPES];
+    private final UpdatePublisher updatePublisher;
+    private final boolean ownsUpdatePublisher;
 
     public StockServiceImpl(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager) {
+        this(stockEntityManager, tradeEntityManager, new BigDecimalNumericEngine(PRECISION_DIGITS));
+    }
+
+    /**
+     * Stocks already in the repository are taken into account for the index; later ones must be registered
+     * through this service.
+     */
+    public StockServiceImpl(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager,
+                            NumericEngine numericEngine) {
+        this(stockEntityManager, tradeEntityManager, numericEngine, new UpdatePublisher(), true);
+    }
+
+    /**
+     * Given publisher may be shared and is not closed by {@link #close()}.
+     */
+    public StockServiceImpl(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager,
+                            NumericEngine numericEngine, UpdatePublisher updatePublisher) {
+        this(stockEntityManager, tradeEntityManager, numericEngine, updatePublisher, false);
+    }
+
+    private StockServiceImpl(StockEntityManager stockEntityManager, TradeEntityManager tradeEntityManager,
+                             NumericEngine numericEngine, UpdatePublisher updatePublisher,
+                             boolean ownsUpdatePublisher) {
         this.stockEntityManager = stockEntityManager;
         this.tradeEntityManager = tradeEntityManager;
+        this.numericEngine = numericEngine;
+        this.updatePublisher = updatePublisher;
+        this.ownsUpdatePublisher = ownsUpdatePublisher;
+        this.parValuesGeometricMean = new GeometricMeanAccumulator();
+        Arrays.setAll(recordingLocks, stripe -> new ReentrantReadWriteLock());
+        this.sharedSymbolIds = stockEntityManager.getSymbolDictionary() == tradeEntityManager.getSymbolDictionary();
+        stockEntityManager.retrieveAll()
+                .forEach(stock -> parValuesGeometricMean.add(stock.getParValue()));
     }
 
     @Override
     public BigDecimal dividendYield(String stockSymbol, BigDecimal marketPrice) {
         checkMarketPricePreconditions(marketPrice);
-        Stock stockForGivenSymbol = retrieveStockOrThrowException(stockSymbol);
+        return dividendYield(retrieveStockOrThrowException(stockSymbol), marketPrice);
+    }
+
+    @Override
+    public BigDecimal dividendYield(int symbolId, BigDecimal marketPrice) {
+        checkMarketPricePreconditions(marketPrice);
+        return dividendYield(retrieveStockOrThrowException(symbolId), marketPrice);
+    }
+
+    private BigDecimal dividendYield(Stock stock, BigDecimal marketPrice) {
         BigDecimal dividendYield;
-        if (stockForGivenSymbol.getType() == Stock.Type.COMMON) {
-            dividendYield = stockForGivenSymbol.getLastDividend()
-                    .divide(marketPrice, PRECISION_DIGITS, BigDecimal.ROUND_UP);
+        if (stock.getType() == Stock.Type.COMMON) {
+            dividendYield = numericEngine.divide(stock.getLastDividend(), marketPrice);
         } else {
-            dividendYield = stockForGivenSymbol.getFixedDividendInPercent()
-                    .multiply(stockForGivenSymbol.getParValue())
-                    .divide(marketPrice, PRECISION_DIGITS, BigDecimal.ROUND_UP);
+            dividendYield = numericEngine.multiplyAndDivide(stock.getFixedDividendInPercent(),
+                    stock.getParValue(), marketPrice);
         }
         return dividendYield;
     }
 
+    private ReadWriteLock recordingLockFor(String stockSymbol) {
+        return recordingLocks[stockSymbol.hashCode() & (RECORDING_LOCK_STRIPES - 1)];
+    }
+
     private Stock retrieveStockOrThrowException(String stockSymbol) {
         Objects.requireNonNull(stockSymbol, "Stock symbol cannot be null.");
         return stockEntityManager.retrieve(stockSymbol)
                 .orElseThrow(() -> new StockDoesNotExistException("No stock found for symbol: " + stockSymbol));
     }
 
+    private Stock retrieveStockOrThrowException(int symbolId) {
+        return stockEntityManager.retrieve(symbolId)
+                .orElseThrow(() -> new StockDoesNotExistException("No stock found for symbol id: " + symbolId));
+    }
+
     @Override
     public BigDecimal PERatio(String stockSymbol, BigDecimal marketPrice) {
         checkMarketPricePreconditions(marketPrice);
         Stock stockForGivenSymbol = retrieveStockOrThrowException(stockSymbol);
-        return marketPrice.divide(stockForGivenSymbol.getLastDividend(), PRECISION_DIGITS, BigDecimal.ROUND_UP);
+        return numericEngine.divide(marketPrice, stockForGivenSymbol.getLastDividend());
+    }
+
+    @Override
+    public BigDecimal PERatio(int symbolId, BigDecimal marketPrice) {
+        checkMarketPricePreconditions(marketPrice);
+        Stock stockForGivenId = retrieveStockOrThrowException(symbolId);
+        return numericEngine.divide(marketPrice, stockForGivenId.getLastDividend());
+    }
+
+    @Override
+    public BulkQueryResult dividendYields(String[] stockSymbols, BigDecimal[] marketPrices) {
+        checkBulkPreconditions(stockSymbols, marketPrices);
+        return runBulkQuery(stockSymbols, false, (i, stock, symbolId) -> {
+            checkMarketPricePreconditions(marketPrices[i]);
+            return dividendYield(stock, marketPrices[i]);
+        });
+    }
+
+    @Override
+    public BulkQueryResult PERatios(String[] stockSymbols, BigDecimal[] marketPrices) {
+        checkBulkPreconditions(stockSymbols, marketPrices);
+        return runBulkQuery(stockSymbols, false, (i, stock, symbolId) -> {
+            checkMarketPricePreconditions(marketPrices[i]);
+            return numericEngine.divide(marketPrices[i], stock.getLastDividend());
+        });
+    }
+
+    /**
+     * Runs given query for every position with the stock of its symbol, found through a single lookup. When asked
+     * for, the lookup goes through the symbol dictionary and the id it finds is passed along, so that the query does
+     * not look the symbol up again; otherwise the id passed is {@link SymbolDictionary#NO_ID}.
+     */
+    private BulkQueryResult runBulkQuery(String[] stockSymbols, boolean withSymbolIds, BulkQuery.StockQuery query) {
+        SymbolDictionary symbolDictionary = stockEntityManager.getSymbolDictionary();
+        return BulkQuery.run(stockSymbols, i -> {
+            String stockSymbol = stockSymbols[i];
+            if (!withSymbolIds) {
+                return query.apply(i, retrieveStockOrThrowException(stockSymbol), SymbolDictionary.NO_ID);
+            }
+            Objects.requireNonNull(stockSymbol, "Stock symbol cannot be null.");
+            int symbolId = symbolDictionary.lookup(stockSymbol);
+            Stock stock = stockEntityManager.retrieve(symbolId)
+                    .orElseThrow(() -> new StockDoesNotExistException("No stock found for symbol: " + stockSymbol));
+            return query.apply(i, stock, symbolId);
+        });
+    }
+
+    @Override
+    public int symbolId(String stockSymbol) {
+        retrieveStockOrThrowException(stockSymbol);
+        return stockEntityManager.getSymbolDictionary().lookup(stockSymbol);
+    }
+
+    @Override
+    public String stockSymbol(int symbolId) {
+        return retrieveStockOrThrowException(symbolId).getStockSymbol();
     }
 
     @Override
     public void addTrade(Trade trade) {
-        checkTradePreconditions(trade);
-        tradeEntityManager.store(trade);
+        retrieveStockOrThrowException(trade.getStockSymbol());
+        checkTradePreconditions(trade, System.currentTimeMillis());
+        Lock recordingLock = recordingLockFor(trade.getStockSymbol()).readLock();
+        TradeListenerException listenerFailure = null;
+        recordingLock.lock();
+        try {
+            tradeEntityManager.store(trade);
+            // the trade is stored, so every listener must see it whatever the others do
+            for (TradeListener listener : tradeListeners) {
+                try {
+                    listener.onTrade(trade);
+                } catch (RuntimeException e) {
+                    if (listenerFailure == null) {
+                        listenerFailure = new TradeListenerException("Trade was recorded but a trade listener failed: "
+                                + e.getMessage());
+                        listenerFailure.initCause(e);
+                    } else {
+                        listenerFailure.addSuppressed(e);
+                    }
+                }
+            }
+        } finally {
+            recordingLock.unlock();
+        }
+        updatePublisher.publish(trade.getStockSymbol());
+        if (listenerFailure != null) {
+            throw listenerFailure;
+        }
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Collection<Trade> trades) {
+        return addTrades(trades.toArray(new Trade[0]));
+    }
+
+    @Override
+    public TradeBatchReport addTrades(Trade[] trades) {
+        Objects.requireNonNull(trades, "Trades cannot be null.");
+        long now = System.currentTimeMillis();
+        Map<String, Boolean> stockExistsBySymbol = new HashMap<>();
+        Map<String, List<Integer>> acceptedIndexesBySymbol = new LinkedHashMap<>();
+        List<TradeRejection> rejections = new ArrayList<>();
+        for (int i = 0; i < trades.length; i++) {
+            Trade trade = trades[i];
+            if (trade == null) {
+                rejections.add(new TradeRejection(i, null, "Trade cannot be null."));
+                continue;
+            }
+            String stockSymbol = trade.getStockSymbol();
+            if (!stockExistsBySymbol.computeIfAbsent(stockSymbol, symbol -> stockEntityManager.retrieve(symbol).isPresent())) {
+                rejections.add(new TradeRejection(i, trade, "No stock found for symbol: " + stockSymbol));
+                continue;
+            }
+            try {
+                checkTradePreconditions(trade, now);
+            } catch (IllegalArgumentException e) {
+                rejections.add(new TradeRejection(i, trade, e.getMessage()));
+                continue;
+            }
+            acceptedIndexesBySymbol.computeIfAbsent(stockSymbol, symbol -> new ArrayList<>()).add(i);
+        }
+        int acceptedCount = 0;
+        List<RuntimeException> listenerFailures = new ArrayList<>();
+        for (List<Integer> acceptedIndexes : acceptedIndexesBySymbol.values()) {
+            List<Trade> acceptedTrades = new ArrayList<>(acceptedIndexes.size());
+            acceptedIndexes.forEach(index -> acceptedTrades.add(trades[index]));
+            String stockSymbol = acceptedTrades.get(0).getStockSymbol();
+            Lock recordingLock = recordingLockFor(stockSymbol).readLock();
+            recordingLock.lock();
+            try {
+                // a symbol's trades are stored all or none, so a refused group is rejected as a whole
+                try {
+                    tradeEntityManager.storeAll(acceptedTrades);
+                } catch (RuntimeException e) {
+                    acceptedIndexes.forEach(index -> rejections.add(
+                            new TradeRejection(index, trades[index], "Trade could not be stored: " + e.getMessage())));
+                    continue;
+                }
+                for (TradeListener listener : tradeListeners) {
+                    for (Trade trade : acceptedTrades) {
+                        try {
+                            listener.onTrade(trade);
+                        } catch (RuntimeException e) {
+                            listenerFailures.add(e);
+                        }
+                    }
+                }
+            } finally {
+                recordingLock.unlock();
+            }
+            acceptedCount += acceptedTrades.size();
+            updatePublisher.publish(stockSymbol);
+        }
+        rejections.sort(Comparator.comparingInt(TradeRejection::getIndex));
+        return new TradeBatchReport(acceptedCount, rejections, listenerFailures);
     }
 
     @Override
     public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp) {
         retrieveStockOrThrowException(stockSymbol);
-        List<Trade> tradesAfterGivenTime = tradeEntityManager.retrieveAfter(stockSymbol, timestamp);
+        return volumeWeightedPrice(tradeEntityManager.aggregateAfter(stockSymbol, timestamp));
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(int symbolId, long timestamp) {
+        Stock stockForGivenId = retrieveStockOrThrowException(symbolId);
+        return volumeWeightedPrice(sharedSymbolIds
+                ? tradeEntityManager.aggregateAfter(symbolId, timestamp)
+                : tradeEntityManager.aggregateAfter(stockForGivenId.getStockSymbol(), timestamp));
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        retrieveStockOrThrowException(stockSymbol);
+        Objects.requireNonNull(side, "Trade side cannot be null.");
+        return volumeWeightedPrice(tradeEntityManager.aggregateAfter(stockSymbol, timestamp, side));
+    }
+
+    @Override
+    public long tradedVolumeAfter(String stockSymbol, long timestamp, Trade.Type side) {
+        retrieveStockOrThrowException(stockSymbol);
+        Objects.requireNonNull(side, "Trade side cannot be null.");
+        return tradeEntityManager.aggregateAfter(stockSymbol, timestamp, side).getQuantity();
+    }
+
+    @Override
+    public BigDecimal orderImbalanceAfter(String stockSymbol, long timestamp) {
+        retrieveStockOrThrowException(stockSymbol);
+        long buyVolume = tradeEntityManager.aggregateAfter(stockSymbol, timestamp, Trade.Type.BUY).getQuantity();
+        long sellVolume = tradeEntityManager.aggregateAfter(stockSymbol, timestamp, Trade.Type.SELL).getQuantity();
+        if (buyVolume + sellVolume == 0) {
+            throw new NoTradeFoundException("No trade has been made after given timestamp.");
+        }
+        return numericEngine.divide(BigDecimal.valueOf(buyVolume - sellVolume), buyVolume + sellVolume);
+    }
+
+    @Override
+    public BulkQueryResult volumeWeightedStockPricesAfter(String[] stockSymbols, long timestamp) {
+        Objects.requireNonNull(stockSymbols, "Stock symbols cannot be null.");
+        return runBulkQuery(stockSymbols, sharedSymbolIds, (i, stock, symbolId) -> volumeWeightedPrice(sharedSymbolIds
+                ? tradeEntityManager.aggregateAfter(symbolId, timestamp)
+                : tradeEntityManager.aggregateAfter(stock.getStockSymbol(), timestamp)));
+    }
+
+    @Override
+    public BigDecimal volumeWeightedStockPriceBetween(String stockSymbol, long from, long to) {
+        retrieveStockOrThrowException(stockSymbol);
+        checkIntervalPreconditions(from, to);
+        TradeAggregate tradesInInterval = tradeEntityManager.aggregateBetween(stockSymbol, from, to);
+        if (tradesInInterval.isEmpty()) {
+            throw new NoTradeFoundException("No trade has been made in given interval.");
+        }
+        return volumeWeightedPrice(tradesInInterval);
+    }
+
+    @Override
+    public PriceRange priceRangeBetween(String stockSymbol, long from, long to) {
+        retrieveStockOrThrowException(stockSymbol);
+        checkIntervalPreconditions(from, to);
+        return tradeEntityManager.priceRangeBetween(stockSymbol, from, to)
+                .orElseThrow(() -> new NoTradeFoundException("No trade has been made in given interval."));
+    }
+
+    private BigDecimal volumeWeightedPrice(TradeAggregate tradesAfterGivenTime) {
         if (tradesAfterGivenTime.isEmpty()) {
             throw new NoTradeFoundException("No trade has been made after given timestamp.");
         }
-        BigDecimal numerator = tradesAfterGivenTime.stream()
-                .map(trade -> trade.getPrice()
-                        .multiply(BigDecimal.valueOf(trade.getSharesQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        int denominator = tradesAfterGivenTime.stream()
-                .map(Trade::getSharesQuantity)
-                .reduce(0, (x, y) -> x + y);
-        return numerator.divide(BigDecimal.valueOf(denominator), PRECISION_DIGITS, BigDecimal.ROUND_UP);
+        return numericEngine.divide(tradesAfterGivenTime.getNotional(), tradesAfterGivenTime.getQuantity());
+    }
+
+    @Override
+    public VolumeWeightedPriceWindow trackVolumeWeightedStockPrice(String stockSymbol, long windowMillis) {
+        retrieveStockOrThrowException(stockSymbol);
+        SlidingWindowVolumeWeightedPrice[] window = new SlidingWindowVolumeWeightedPrice[1];
+        window[0] = new SlidingWindowVolumeWeightedPrice(stockSymbol, windowMillis, numericEngine,
+                System::currentTimeMillis, () -> removeTradeListener(window[0]));
+        // trades recorded from now on are held back until the stored ones are in; no trade of the symbol is
+        // between being stored and being passed to the listeners while the stored ones are taken
+        Spliterator<Trade> storedTrades;
+        Lock recordingLock = recordingLockFor(stockSymbol).writeLock();
+        recordingLock.lock();
+        try {
+            addTradeListener(window[0]);
+            storedTrades = tradeEntityManager.spliteratorAfter(stockSymbol, System.currentTimeMillis() - windowMillis);
+        } finally {
+            recordingLock.unlock();
+        }
+        window[0].seed(Spliterators.iterator(storedTrades));
+        return window[0];
+    }
+
+    @Override
+    public Subscription subscribeVolumeWeightedStockPrice(String stockSymbol, long windowMillis,
+                                                          UpdateListener listener) {
+        retrieveStockOrThrowException(stockSymbol);
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window length must be greater than 0.");
+        }
+        Objects.requireNonNull(listener, "Update listener cannot be null.");
+        return updatePublisher.subscribe(stockSymbol,
+                () -> volumeWeightedStockPriceAfter(stockSymbol, System.currentTimeMillis() - windowMillis), listener);
+    }
+
+    @Override
+    public Subscription subscribeGBCEAllShareIndex(UpdateListener listener) {
+        Objects.requireNonNull(listener, "Update listener cannot be null.");
+        return updatePublisher.subscribe(GBCE_ALL_SHARE_INDEX_TOPIC, this::GBCEAllShareIndex, listener);
     }
 
     @Override
     public BigDecimal GBCEAllShareIndex() {
+        if (parValuesGeometricMean.count() == 0) {
+            throw new NoStockFoundException("No stock registered yet.");
+        }
+        if (parValuesGeometricMean.hasNonPositiveValues()) {
+            return exactGBCEAllShareIndex();
+        }
+        return parValuesGeometricMean.geometricMean().setScale(PRECISION_DIGITS, BigDecimal.ROUND_UP);
+    }
+
+    @Override
+    public BigDecimal exactGBCEAllShareIndex() {
+        BigDecimal[] parValues = parValuesOrThrowException();
+        return BigDecimalMath.pow(BalancedProduct.of(parValues),
+                BigDecimal.valueOf(1d/parValues.length),
+                new MathContext(10, RoundingMode.UP)).setScale(PRECISION_DIGITS, BigDecimal.ROUND_UP);
+    }
+
+    @Override
+    public BigDecimal GBCEAllShareIndex(MathContext mathContext) {
+        Objects.requireNonNull(mathContext, "Math context cannot be null.");
+        if (mathContext.getPrecision() <= 0) {
+            throw new IllegalArgumentException("Math context precision must be greater than 0.");
+        }
+        BigDecimal[] parValues = parValuesOrThrowException();
+        if (Arrays.stream(parValues).anyMatch(parValue -> parValue.signum() <= 0)) {
+            return exactGBCEAllShareIndex().round(mathContext);
+        }
+        MathContext workingContext = new MathContext(mathContext.getPrecision() + GUARD_DIGITS,
+                mathContext.getRoundingMode());
+        IntStream blocks = IntStream.range(0, (parValues.length + LOG_BLOCK_SIZE - 1) / LOG_BLOCK_SIZE);
+        if (parValues.length >= BalancedProduct.PARALLEL_THRESHOLD) {
+            blocks = blocks.parallel();
+        }
+        BigDecimal logSum = blocks
+                .mapToObj(block -> BalancedProduct.of(parValues, block * LOG_BLOCK_SIZE,
+                        Math.min(parValues.length, (block + 1) * LOG_BLOCK_SIZE)))
+                .map(blockProduct -> BigDecimalMath.log(blockProduct, workingContext))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal meanLog = logSum.divide(BigDecimal.valueOf(parValues.length), workingContext);
+        return BigDecimalMath.exp(meanLog, workingContext).round(mathContext);
+    }
+
+    private BigDecimal[] parValuesOrThrowException() {
         List<Stock> allStocks = stockEntityManager.retrieveAll();
         if (allStocks.isEmpty()) {
             throw new NoStockFoundException("No stock registered yet.");
         }
-        BigDecimal products = BigDecimal.ONE;
-        products = allStocks.stream()
+        return allStocks.stream()
                 .map(Stock::getParValue)
-                .reduce(BigDecimal.ONE, BigDecimal::multiply);
-        return BigDecimalMath.pow(products,
-                BigDecimal.valueOf(1d/allStocks.size()),
-                new MathContext(10, RoundingMode.UP)).setScale(PRECISION_DIGITS, BigDecimal.ROUND_UP);
+                .toArray(BigDecimal[]::new);
     }
 
     @Override
     public void register(Stock stock) {
         try {
             stockEntityManager.store(stock);
+            parValuesGeometricMean.add(stock.getParValue());
+            updatePublisher.publish(GBCE_ALL_SHARE_INDEX_TOPIC);
         } catch (AlreadyExistsException e) {
             throw new DuplicateStockException("Stock with symbol: " + stock.getStockSymbol() + " already exists.");
         }
     }
 
-    private void checkTradePreconditions(Trade trade) {
-        retrieveStockOrThrowException(trade.getStockSymbol());
+    @Override
+    public void addTradeListener(TradeListener listener) {
+        Objects.requireNonNull(listener, "Trade listener cannot be null.");
+        tradeListeners.add(listener);
+    }
+
+    @Override
+    public void removeTradeListener(TradeListener listener) {
+        tradeListeners.remove(listener);
+    }
+
+    /**
+     * Stops pushing updates to subscribers. The repositories are left open.
+     */
+    @Override
+    public void close() {
+        if (ownsUpdatePublisher) {
+            updatePublisher.close();
+        }
+    }
+
+    private void checkTradePreconditions(Trade trade, long now) {
         if (trade.getSharesQuantity() <= 0) {
             throw new IllegalArgumentException("Shares quantity for trade cannot be less than or equal to 0.");
         }
@@ -119,7 +508,7 @@ public class StockServiceImpl implements StockService {
         if (BigDecimal.ONE.compareTo(trade.getPrice()) == 1) {
             throw new IllegalArgumentException("Price for trade cannot be less than or equal to 0.");
         }
-        if (System.currentTimeMillis() < trade.getTimestamp()) {
+        if (now < trade.getTimestamp()) {
             throw new IllegalArgumentException("Timestamp for trade cannot be in the future.");
         }
     }
@@ -130,4 +519,18 @@ public class StockServiceImpl implements StockService {
             throw new IllegalArgumentException("Market price cannot be less than or equal to 0.");
         }
     }
+
+    private void checkIntervalPreconditions(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Interval start cannot be after its end.");
+        }
+    }
+
+    private void checkBulkPreconditions(String[] stockSymbols, BigDecimal[] marketPrices) {
+        Objects.requireNonNull(stockSymbols, "Stock symbols cannot be null.");
+        Objects.requireNonNull(marketPrices, "Market prices cannot be null.");
+        if (stockSymbols.length != marketPrices.length) {
+            throw new IllegalArgumentException("Stock symbols and market prices must have the same length.");
+        }
+    }
 }
@@ -0,0 +1,232 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.StockService;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes trades off the feed threads: {@link #submitTrade(Trade)} only enqueues the trade, and a writer thread adds it
+ * to the {@link StockService}.
+ *
+ * Trades are sharded by symbol, each shard with a bounded {@link BoundedRing} and its own writer, so the trades of a
+ * symbol are added in submission order and writers never contend on a symbol. A full shard rejects trades rather than
+ * blocking the feed. Futures complete on the writer thread, so callbacks attached to them should be quick.
+ */
+public class TradeIngestionPipeline implements Closeable {
+
+    public static final int DEFAULT_SHARD_CAPACITY = 1 << 14;
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final StockService stockService;
+    private final Shard[] shards;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder insertNanos = new LongAdder();
+    private final AtomicLong maxInsertNanos = new AtomicLong();
+    // submits in progress, so that closing waits for trades that made it past the closed check
+    private final AtomicInteger activeSubmits = new AtomicInteger();
+    private volatile boolean closed;
+
+    public TradeIngestionPipeline(StockService stockService, int shardCount) {
+        this(stockService, shardCount, DEFAULT_SHARD_CAPACITY);
+    }
+
+    /**
+     * @param shardCapacity trades each shard holds before rejecting, rounded up to a power of two
+     */
+    public TradeIngestionPipeline(StockService stockService, int shardCount, int shardCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than 0.");
+        }
+        this.stockService = stockService;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(shardCapacity, "trade-ingestion-" + i);
+        }
+        for (Shard shard : shards) {
+            shard.writer.start();
+        }
+    }
+
+    /**
+     * Queues given trade without blocking. The future completes once the trade is added, or exceptionally with the
+     * exception {@link StockService#addTrade(Trade)} threw, or with a {@link RejectedExecutionException} if the
+     * trade's shard is full or the pipeline is closed.
+     */
+    public CompletableFuture<Void> submitTrade(Trade trade) {
+        Objects.requireNonNull(trade, "Trade cannot be null.");
+        PendingTrade pending = new PendingTrade(trade);
+        activeSubmits.incrementAndGet();
+        try {
+            if (closed) {
+                rejected.increment();
+                pending.completeExceptionally(new RejectedExecutionException("Trade ingestion is closed."));
+                return pending;
+            }
+            Shard shard = shards[Math.floorMod(trade.getStockSymbol().hashCode(), shards.length)];
+            if (!shard.ring.offer(pending)) {
+                rejected.increment();
+                pending.completeExceptionally(new RejectedExecutionException("Trade ingestion queue is full."));
+                return pending;
+            }
+            submitted.increment();
+            shard.wakeUp();
+            return pending;
+        } finally {
+            activeSubmits.decrementAndGet();
+        }
+    }
+
+    private void add(PendingTrade pending) {
+        long start = System.nanoTime();
+        try {
+            stockService.addTrade(pending.trade);
+        } catch (RuntimeException e) {
+            recordInsert(start);
+            failed.increment();
+            pending.completeExceptionally(e);
+            return;
+        }
+        recordInsert(start);
+        completed.increment();
+        pending.complete(null);
+    }
+
+    private void recordInsert(long start) {
+        long elapsed = System.nanoTime() - start;
+        insertNanos.add(elapsed);
+        long max;
+        while (elapsed > (max = maxInsertNanos.get()) && !maxInsertNanos.compareAndSet(max, elapsed)) {
+            // retry until the maximum is at least elapsed
+        }
+    }
+
+    /**
+     * Trades queued and not yet taken by a writer, across all shards.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.ring.size();
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(int shard) {
+        return shards[shard].ring.size();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Mean time the service took to add a trade, in nanoseconds, not counting the time spent queued.
+     */
+    public long getMeanInsertLatencyNanos() {
+        long inserts = completed.sum() + failed.sum();
+        return inserts == 0 ? 0 : insertNanos.sum() / inserts;
+    }
+
+    public long getMaxInsertLatencyNanos() {
+        return maxInsertNanos.get();
+    }
+
+    /**
+     * Stops accepting trades, then waits for the queued ones to be added.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        while (activeSubmits.get() > 0) {
+            Thread.yield();
+        }
+        for (Shard shard : shards) {
+            shard.stopping = true;
+            LockSupport.unpark(shard.writer);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class Shard {
+        private final BoundedRing<PendingTrade> ring;
+        private final Thread writer;
+        private volatile boolean parked;
+        private volatile boolean stopping;
+
+        private Shard(int capacity, String name) {
+            this.ring = new BoundedRing<>(capacity);
+            this.writer = new Thread(this::drain, name);
+            writer.setDaemon(true);
+        }
+
+        private void wakeUp() {
+            if (parked) {
+                LockSupport.unpark(writer);
+            }
+        }
+
+        private void drain() {
+            int idleSpins = 0;
+            while (true) {
+                PendingTrade pending = ring.poll();
+                if (pending != null) {
+                    add(pending);
+                    idleSpins = 0;
+                } else if (stopping) {
+                    return;
+                } else if (idleSpins++ < SPINS_BEFORE_PARKING) {
+                    Thread.yield();
+                } else {
+                    parked = true;
+                    if (ring.size() == 0 && !stopping) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        }
+    }
+
+    private static final class PendingTrade extends CompletableFuture<Void> {
+        private final Trade trade;
+
+        private PendingTrade(Trade trade) {
+            this.trade = trade;
+        }
+    }
+}
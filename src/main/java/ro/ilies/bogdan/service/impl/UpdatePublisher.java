@@ -0,0 +1,164 @@
+package ro.ilies.bogdan.service.impl;
+
+import ro.ilies.bogdan.service.Subscription;
+import ro.ilies.bogdan.service.UpdateListener;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Delivers value updates to subscribers of a topic, e.g. a stock symbol, when the topic is published.
+ *
+ * Publishing only flags the topic's subscriptions as changed and schedules a delivery on the dispatcher, so it never
+ * waits for a listener. Changes made before a scheduled delivery runs are coalesced into it, and deliveries of one
+ * subscription are at least the minimum interval apart. A delivery computes the current value and skips listeners
+ * that already have it; a value that cannot be computed yet, e.g. with no trade recorded, is not delivered.
+ *
+ * Listeners are called on the dispatcher's threads, one delivery of a subscription at a time. {@link #close()} stops
+ * the deliveries and shuts down a dispatcher this publisher created; a given dispatcher is left to its owner.
+ */
+public class UpdatePublisher implements Closeable {
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 100;
+
+    private final ScheduledExecutorService dispatcher;
+    private final boolean ownsDispatcher;
+    private final long minIntervalNanos;
+    private final ConcurrentMap<Object, List<Feed>> feedsByTopic = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Delivers at most ten times a second on a single daemon thread of its own, started with the first delivery.
+     * Every subscription is delivered by that thread in turn, so a slow listener delays the updates of the others.
+     */
+    public UpdatePublisher() {
+        this(Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-updates");
+            thread.setDaemon(true);
+            return thread;
+        }), DEFAULT_MIN_INTERVAL_MILLIS, true);
+    }
+
+    /**
+     * Delivers on given dispatcher, which may be shared and is not shut down by {@link #close()}.
+     */
+    public UpdatePublisher(ScheduledExecutorService dispatcher, long minIntervalMillis) {
+        this(dispatcher, minIntervalMillis, false);
+    }
+
+    private UpdatePublisher(ScheduledExecutorService dispatcher, long minIntervalMillis, boolean ownsDispatcher) {
+        if (minIntervalMillis < 0) {
+            throw new IllegalArgumentException("Minimum interval between updates cannot be negative.");
+        }
+        this.dispatcher = dispatcher;
+        this.ownsDispatcher = ownsDispatcher;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+    }
+
+    /**
+     * Subscribes given listener to the values of the topic, starting with the current one.
+     */
+    Subscription subscribe(Object topic, Supplier<BigDecimal> value, UpdateListener listener) {
+        Feed feed = new Feed(topic, value, listener);
+        feedsByTopic.compute(topic, (key, feeds) -> {
+            List<Feed> topicFeeds = feeds == null ? new CopyOnWriteArrayList<>() : feeds;
+            topicFeeds.add(feed);
+            return topicFeeds;
+        });
+        feed.changed();
+        return feed;
+    }
+
+    void publish(Object topic) {
+        List<Feed> feeds = feedsByTopic.get(topic);
+        if (feeds != null) {
+            for (Feed feed : feeds) {
+                feed.changed();
+            }
+        }
+    }
+
+    int subscriptionCount(Object topic) {
+        List<Feed> feeds = feedsByTopic.get(topic);
+        return feeds == null ? 0 : feeds.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsDispatcher) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    private final class Feed implements Subscription {
+        private final Object topic;
+        private final Supplier<BigDecimal> value;
+        private final UpdateListener listener;
+        // changes not yet seen by a delivery; the one that makes it non zero schedules the next delivery
+        private final AtomicInteger pendingChanges = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile long nextDeliveryNanos = System.nanoTime();
+        private BigDecimal lastDelivered;
+
+        private Feed(Object topic, Supplier<BigDecimal> value, UpdateListener listener) {
+            this.topic = topic;
+            this.value = value;
+            this.listener = listener;
+        }
+
+        private void changed() {
+            if (pendingChanges.getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            long delay = Math.max(0, nextDeliveryNanos - System.nanoTime());
+            try {
+                dispatcher.schedule(this::deliver, delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // dispatcher shut down, nothing is delivered any more
+            }
+        }
+
+        private void deliver() {
+            int seenChanges = pendingChanges.get();
+            if (closed || UpdatePublisher.this.closed) {
+                return;
+            }
+            nextDeliveryNanos = System.nanoTime() + minIntervalNanos;
+            try {
+                BigDecimal current = value.get();
+                if (lastDelivered == null || current.compareTo(lastDelivered) != 0) {
+                    listener.onUpdate(current);
+                    lastDelivered = current;
+                }
+            } catch (RuntimeException e) {
+                // no value yet or a failing listener, the next change tries again
+            }
+            if (pendingChanges.addAndGet(-seenChanges) != 0) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            feedsByTopic.computeIfPresent(topic, (key, feeds) -> {
+                feeds.remove(this);
+                return feeds.isEmpty() ? null : feeds;
+            });
+        }
+    }
+}
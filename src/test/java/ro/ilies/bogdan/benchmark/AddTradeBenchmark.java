@@ -0,0 +1,54 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.BigDecimalNumericEngine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a trade, alone and with several threads adding trades for all symbols.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AddTradeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Market {
+        StockService stockService;
+        long timestamp;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            stockService = BenchmarkMarket.newStockService(new BigDecimalNumericEngine(BenchmarkMarket.PRECISION_DIGITS));
+            timestamp = System.currentTimeMillis() - 1000;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Feed {
+        private final Random random = new Random();
+        private int next;
+
+        Trade nextTrade(long timestamp) {
+            return BenchmarkMarket.randomTrade(random,
+                    BenchmarkMarket.STOCK_SYMBOLS[next++ % BenchmarkMarket.STOCK_SYMBOLS.length], timestamp);
+        }
+    }
+
+    @Benchmark
+    public void addTrade(Market market, Feed feed) {
+        market.stockService.addTrade(feed.nextTrade(market.timestamp));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addTradeContended(Market market, Feed feed) {
+        market.stockService.addTrade(feed.nextTrade(market.timestamp));
+    }
+}
@@ -0,0 +1,57 @@
+package ro.ilies.bogdan.benchmark;
+
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.NumericEngine;
+import ro.ilies.bogdan.service.impl.StockServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Builds the markets used by the benchmarks.
+ */
+final class BenchmarkMarket {
+
+    // scale of the results computed by StockServiceImpl
+    static final int PRECISION_DIGITS = 5;
+
+    static final String[] STOCK_SYMBOLS = {"TEA", "POP", "ALE", "GIN", "JOE"};
+
+    private BenchmarkMarket() {
+    }
+
+    static StockService newStockService(NumericEngine numericEngine) {
+        SymbolDictionary symbolDictionary = new SymbolDictionary();
+        StockService stockService = new StockServiceImpl(new InMemoryStockEntityManager(symbolDictionary),
+                new InMemoryTradeEntityManager(symbolDictionary), numericEngine);
+        stockService.register(new Stock("TEA", Stock.Type.COMMON, BigDecimal.ZERO, null, BigDecimal.valueOf(100)));
+        stockService.register(new Stock("POP", Stock.Type.COMMON, BigDecimal.valueOf(8), null, BigDecimal.valueOf(100)));
+        stockService.register(new Stock("ALE", Stock.Type.COMMON, BigDecimal.valueOf(23), null, BigDecimal.valueOf(60)));
+        stockService.register(new Stock("GIN", Stock.Type.PREFERRED, BigDecimal.valueOf(8), BigDecimal.valueOf(2), BigDecimal.valueOf(100)));
+        stockService.register(new Stock("JOE", Stock.Type.COMMON, BigDecimal.valueOf(13), null, BigDecimal.valueOf(250)));
+        return stockService;
+    }
+
+    /**
+     * Adds trades for given symbol, one per millisecond, the last one made at given timestamp.
+     */
+    static void addTrades(StockService stockService, String stockSymbol, int count, long lastTimestamp) {
+        Random random = new Random(count);
+        Trade[] trades = new Trade[count];
+        for (int i = 0; i < count; i++) {
+            trades[i] = randomTrade(random, stockSymbol, lastTimestamp - count + 1 + i);
+        }
+        stockService.addTrades(trades);
+    }
+
+    static Trade randomTrade(Random random, String stockSymbol, long timestamp) {
+        return new Trade(stockSymbol, timestamp, 1 + random.nextInt(1000),
+                random.nextBoolean() ? Trade.Type.BUY : Trade.Type.SELL,
+                BigDecimal.valueOf(100_00 + random.nextInt(900_00), 2));
+    }
+}
@@ -0,0 +1,70 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.BigDecimalNumericEngine;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dividend yields and volume weighted prices of a whole book, one query per stock versus one bulk query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkQueryBenchmark {
+
+    @Param({"100", "10000"})
+    public int bookSize;
+
+    private StockService stockService;
+    private String[] stockSymbols;
+    private BigDecimal[] marketPrices;
+    private long since;
+
+    @Setup
+    public void setUp() {
+        stockService = BenchmarkMarket.newStockService(new BigDecimalNumericEngine(BenchmarkMarket.PRECISION_DIGITS));
+        stockSymbols = new String[bookSize];
+        marketPrices = new BigDecimal[bookSize];
+        for (int i = 0; i < bookSize; i++) {
+            stockSymbols[i] = BenchmarkMarket.STOCK_SYMBOLS[i % BenchmarkMarket.STOCK_SYMBOLS.length];
+            marketPrices[i] = BigDecimal.valueOf(100 + i % 50);
+        }
+        long now = System.currentTimeMillis();
+        for (String stockSymbol : BenchmarkMarket.STOCK_SYMBOLS) {
+            BenchmarkMarket.addTrades(stockService, stockSymbol, 100, now);
+        }
+        since = now - 100;
+    }
+
+    @Benchmark
+    public void singleQueries(Blackhole blackhole) {
+        for (int i = 0; i < bookSize; i++) {
+            blackhole.consume(stockService.dividendYield(stockSymbols[i], marketPrices[i]));
+        }
+    }
+
+    @Benchmark
+    public BulkQueryResult bulkQuery() {
+        return stockService.dividendYields(stockSymbols, marketPrices);
+    }
+
+    @Benchmark
+    public void singleVolumeWeightedPriceQueries(Blackhole blackhole) {
+        for (int i = 0; i < bookSize; i++) {
+            blackhole.consume(stockService.volumeWeightedStockPriceAfter(stockSymbols[i], since));
+        }
+    }
+
+    @Benchmark
+    public BulkQueryResult bulkVolumeWeightedPriceQuery() {
+        return stockService.volumeWeightedStockPricesAfter(stockSymbols, since);
+    }
+}
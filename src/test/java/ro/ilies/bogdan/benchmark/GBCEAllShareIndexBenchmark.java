@@ -0,0 +1,61 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.StockServiceImpl;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the incremental, the exact and the logarithmic GBCE All Share Index across registry sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GBCEAllShareIndexBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int registrySize;
+
+    private StockService stockService;
+
+    @Setup
+    public void setUp() {
+        stockService = new StockServiceImpl(new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
+        Random random = new Random(registrySize);
+        for (int i = 0; i < registrySize; i++) {
+            stockService.register(new Stock("STOCK" + i, Stock.Type.COMMON, BigDecimal.valueOf(random.nextInt(20)),
+                    null, BigDecimal.valueOf(1 + random.nextInt(1000))));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal GBCEAllShareIndex() {
+        return stockService.GBCEAllShareIndex();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal GBCEAllShareIndexContended() {
+        return stockService.GBCEAllShareIndex();
+    }
+
+    @Benchmark
+    public BigDecimal exactGBCEAllShareIndex() {
+        return stockService.exactGBCEAllShareIndex();
+    }
+
+    @Benchmark
+    public BigDecimal GBCEAllShareIndexFromLogarithms() {
+        return stockService.GBCEAllShareIndex(MathContext.DECIMAL64);
+    }
+}
@@ -0,0 +1,48 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.BigDecimalNumericEngine;
+import ro.ilies.bogdan.service.impl.InstrumentedStockService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link InstrumentedStockService} on the cheapest queries, where it weighs the most.
+ * Run with -prof gc to check that recording does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class InstrumentationOverheadBenchmark {
+
+    @Param({"plain", "instrumented"})
+    public String service;
+
+    private StockService stockService;
+    private final BigDecimal marketPrice = BigDecimal.valueOf(1234.5d);
+    private long windowStart;
+
+    @Setup
+    public void setUp() {
+        StockService plain = BenchmarkMarket.newStockService(new BigDecimalNumericEngine(BenchmarkMarket.PRECISION_DIGITS));
+        stockService = "instrumented".equals(service) ? new InstrumentedStockService(plain) : plain;
+        long lastTimestamp = System.currentTimeMillis() - 1000;
+        BenchmarkMarket.addTrades(stockService, "ALE", 100_000, lastTimestamp);
+        windowStart = lastTimestamp - 10_000;
+    }
+
+    @Benchmark
+    public BigDecimal PERatio() {
+        return stockService.PERatio("ALE", marketPrice);
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPriceAfter() {
+        return stockService.volumeWeightedStockPriceAfter("ALE", windowStart);
+    }
+}
@@ -0,0 +1,46 @@
+package ro.ilies.bogdan.benchmark;
+
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.repository.snapshot.MarketSnapshot;
+import ro.ilies.bogdan.repository.snapshot.SnapshotReport;
+import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures the size of a market snapshot and how long writing and restoring it take.
+ *
+ * Run with: java -cp target/classes:target/test-classes ro.ilies.bogdan.benchmark.MarketSnapshotBenchmark [trades]
+ */
+public class MarketSnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int trades = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        InMemoryStockEntityManager stockEntityManager = new InMemoryStockEntityManager();
+        InMemoryTradeEntityManager tradeEntityManager = new InMemoryTradeEntityManager();
+        for (String stockSymbol : BenchmarkMarket.STOCK_SYMBOLS) {
+            stockEntityManager.store(new Stock(stockSymbol, Stock.Type.COMMON, BigDecimal.TEN, null, BigDecimal.valueOf(100)));
+        }
+        Random random = new Random(42);
+        long timestamp = System.currentTimeMillis() - trades;
+        for (int i = 0; i < trades; i++) {
+            tradeEntityManager.store(BenchmarkMarket.randomTrade(random,
+                    BenchmarkMarket.STOCK_SYMBOLS[i % BenchmarkMarket.STOCK_SYMBOLS.length], timestamp + i));
+        }
+        Path file = Files.createTempFile("market", ".snapshot");
+        try {
+            SnapshotReport written = MarketSnapshot.write(stockEntityManager, tradeEntityManager, file);
+            System.out.printf("write: %d trades, %.1f bytes/trade, %d ms%n", written.getTradeCount(),
+                    (double) written.getSizeBytes() / written.getTradeCount(), written.getElapsedMillis());
+            SnapshotReport restored = MarketSnapshot.restore(file, new InMemoryStockEntityManager(),
+                    new InMemoryTradeEntityManager());
+            System.out.printf("restore: %d trades, %d ms%n", restored.getTradeCount(), restored.getElapsedMillis());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.BigDecimalNumericEngine;
+import ro.ilies.bogdan.service.impl.FixedPointNumericEngine;
+import ro.ilies.bogdan.service.impl.NumericEngine;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of dividend yield and P/E ratio, with each numeric engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockRatioBenchmark {
+
+    @Param({"bigDecimal", "fixedPoint"})
+    public String numericEngine;
+
+    private StockService stockService;
+    private final BigDecimal marketPrice = new BigDecimal("123.45");
+
+    @Setup
+    public void setUp() {
+        NumericEngine engine = "fixedPoint".equals(numericEngine)
+                ? new FixedPointNumericEngine(BenchmarkMarket.PRECISION_DIGITS)
+                : new BigDecimalNumericEngine(BenchmarkMarket.PRECISION_DIGITS);
+        stockService = BenchmarkMarket.newStockService(engine);
+    }
+
+    @Benchmark
+    public BigDecimal dividendYieldCommon() {
+        return stockService.dividendYield("POP", marketPrice);
+    }
+
+    @Benchmark
+    public BigDecimal dividendYieldPreferred() {
+        return stockService.dividendYield("GIN", marketPrice);
+    }
+
+    @Benchmark
+    public BigDecimal PERatio() {
+        return stockService.PERatio("JOE", marketPrice);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal dividendYieldContended() {
+        return stockService.dividendYield("POP", marketPrice);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal PERatioContended() {
+        return stockService.PERatio("JOE", marketPrice);
+    }
+}
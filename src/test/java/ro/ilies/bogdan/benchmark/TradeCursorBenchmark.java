@@ -0,0 +1,57 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.trade.TradeEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of summing the quantities of a symbol's trades from a materialized list, from a sequential cursor and from a
+ * parallel stream over the cursor. Run with -prof gc to compare the allocation per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TradeCursorBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int historySize;
+
+    private TradeEntityManager tradeEntityManager;
+    private long firstTimestamp;
+
+    @Setup
+    public void setUp() {
+        tradeEntityManager = new InMemoryTradeEntityManager();
+        Random random = new Random(42);
+        firstTimestamp = System.currentTimeMillis() - historySize;
+        for (int i = 0; i < historySize; i++) {
+            tradeEntityManager.store(BenchmarkMarket.randomTrade(random, "ALE", firstTimestamp + i));
+        }
+    }
+
+    @Benchmark
+    public long retrieveAfter() {
+        long quantity = 0;
+        for (Trade trade : tradeEntityManager.retrieveAfter("ALE", firstTimestamp)) {
+            quantity += trade.getSharesQuantity();
+        }
+        return quantity;
+    }
+
+    @Benchmark
+    public long streamAfter() {
+        return tradeEntityManager.streamAfter("ALE", firstTimestamp).mapToLong(Trade::getSharesQuantity).sum();
+    }
+
+    @Benchmark
+    public long parallelStreamAfter() {
+        return tradeEntityManager.streamAfter("ALE", firstTimestamp).parallel().mapToLong(Trade::getSharesQuantity).sum();
+    }
+}
@@ -0,0 +1,50 @@
+package ro.ilies.bogdan.benchmark;
+
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.trade.TradeEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.ColumnarTradeEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the retained heap per stored trade of each {@link TradeEntityManager} implementation.
+ *
+ * Run with: java -cp target/classes:target/test-classes ro.ilies.bogdan.benchmark.TradeFootprintBenchmark [trades]
+ */
+public class TradeFootprintBenchmark {
+
+    private static final String[] STOCK_SYMBOLS = {"TEA", "POP", "ALE", "GIN", "JOE"};
+
+    public static void main(String[] args) {
+        int trades = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        measure("InMemoryTradeEntityManager", InMemoryTradeEntityManager::new, trades);
+        measure("ColumnarTradeEntityManager", ColumnarTradeEntityManager::new, trades);
+    }
+
+    private static void measure(String name, Supplier<TradeEntityManager> implementation, int trades) {
+        long before = usedHeap();
+        TradeEntityManager tradeEntityManager = implementation.get();
+        Random random = new Random(42);
+        long timestamp = System.currentTimeMillis() - trades;
+        for (int i = 0; i < trades; i++) {
+            tradeEntityManager.store(new Trade(STOCK_SYMBOLS[i % STOCK_SYMBOLS.length], timestamp + i,
+                    1 + random.nextInt(1000), random.nextBoolean() ? Trade.Type.BUY : Trade.Type.SELL,
+                    BigDecimal.valueOf(100_00 + random.nextInt(900_00), 2)));
+        }
+        long after = usedHeap();
+        System.out.printf("%s: %d trades, %.1f bytes/trade%n", name, trades, (double) (after - before) / trades);
+        // keep the repository reachable until measured
+        tradeEntityManager.aggregateAfter(STOCK_SYMBOLS[0], timestamp);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
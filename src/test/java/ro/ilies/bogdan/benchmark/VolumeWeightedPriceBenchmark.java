@@ -0,0 +1,69 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.impl.BigDecimalNumericEngine;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a volume weighted price query over histories of several sizes, for windows covering a part of them,
+ * over all trades, over the trades of one side and over a bounded interval ending before the last trade.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class VolumeWeightedPriceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int historySize;
+
+    @Param({"1", "10", "100"})
+    public int windowPercent;
+
+    private StockService stockService;
+    private long windowStart;
+    private long windowEnd;
+    private int symbolId;
+
+    @Setup
+    public void setUp() {
+        stockService = BenchmarkMarket.newStockService(new BigDecimalNumericEngine(BenchmarkMarket.PRECISION_DIGITS));
+        long lastTimestamp = System.currentTimeMillis() - 1000;
+        BenchmarkMarket.addTrades(stockService, "ALE", historySize, lastTimestamp);
+        windowStart = lastTimestamp - (long) historySize * windowPercent / 100 + 1;
+        windowEnd = lastTimestamp - historySize / 200;
+        symbolId = stockService.symbolId("ALE");
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPriceAfter() {
+        return stockService.volumeWeightedStockPriceAfter("ALE", windowStart);
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPriceAfterBySymbolId() {
+        return stockService.volumeWeightedStockPriceAfter(symbolId, windowStart);
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPriceAfterBySide() {
+        return stockService.volumeWeightedStockPriceAfter("ALE", windowStart, Trade.Type.SELL);
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPriceBetween() {
+        return stockService.volumeWeightedStockPriceBetween("ALE", windowStart, windowEnd);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal volumeWeightedStockPriceAfterContended() {
+        return stockService.volumeWeightedStockPriceAfter("ALE", windowStart);
+    }
+}
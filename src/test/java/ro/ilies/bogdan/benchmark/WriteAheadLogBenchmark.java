@@ -0,0 +1,65 @@
+package ro.ilies.bogdan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.trade.impl.GroupCommitPolicy;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.WriteAheadLogTradeEntityManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable trades stored per second by concurrent writers, for several group commit batch sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WriteAheadLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Log {
+        @Param({"1", "8", "64", "512"})
+        public int maxBatchSize;
+
+        WriteAheadLogTradeEntityManager tradeEntityManager;
+        long timestamp;
+        private Path logFile;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            logFile = Files.createTempFile("trades", ".wal");
+            tradeEntityManager = new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile,
+                    GroupCommitPolicy.defaults().withMaxBatchSize(maxBatchSize).withMaxDelayMicros(500));
+            timestamp = System.currentTimeMillis() - 1000;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            tradeEntityManager.close();
+            Files.delete(logFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Feed {
+        private final Random random = new Random();
+        private int next;
+
+        Trade nextTrade(long timestamp) {
+            return BenchmarkMarket.randomTrade(random,
+                    BenchmarkMarket.STOCK_SYMBOLS[next++ % BenchmarkMarket.STOCK_SYMBOLS.length], timestamp);
+        }
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void store(Log log, Feed feed) {
+        log.tradeEntityManager.store(feed.nextTrade(log.timestamp));
+    }
+}
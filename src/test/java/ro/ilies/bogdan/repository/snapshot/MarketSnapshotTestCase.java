@@ -0,0 +1,76 @@
+package ro.ilies.bogdan.repository.snapshot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class MarketSnapshotTestCase {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void thatRestoredRepositoriesHoldTheSameStocksAndTrades() throws Exception {
+        InMemoryStockEntityManager stockEntityManager = new InMemoryStockEntityManager();
+        InMemoryTradeEntityManager tradeEntityManager = new InMemoryTradeEntityManager();
+        stockEntityManager.store(new Stock("TEA", Stock.Type.COMMON, BigDecimal.ZERO, null, BigDecimal.valueOf(100)));
+        stockEntityManager.store(new Stock("GIN", Stock.Type.PREFERRED, BigDecimal.valueOf(8), BigDecimal.valueOf(0.02d),
+                new BigDecimal("123456789012345678901234567890.5")));
+        Random random = new Random(42);
+        long timestamp = System.currentTimeMillis() - 100_000;
+        for (int i = 0; i < 100_000; i++) {
+            // mostly in order, as trades arrive, with a few late ones
+            long tradeTimestamp = i % 1000 == 999 ? timestamp + random.nextInt(i) : timestamp + i;
+            tradeEntityManager.store(new Trade(i % 3 == 0 ? "TEA" : "GIN", tradeTimestamp,
+                    1 + random.nextInt(1000), random.nextBoolean() ? Trade.Type.BUY : Trade.Type.SELL,
+                    BigDecimal.valueOf(100_00 + random.nextInt(900_00), 2)));
+        }
+        tradeEntityManager.store(new Trade("GIN", timestamp, Integer.MAX_VALUE, Trade.Type.SELL,
+                new BigDecimal("-98765432109876543210.123")));
+        Path file = folder.getRoot().toPath().resolve("market.snapshot");
+
+        SnapshotReport written = MarketSnapshot.write(stockEntityManager, tradeEntityManager, file);
+        InMemoryStockEntityManager restoredStocks = new InMemoryStockEntityManager();
+        InMemoryTradeEntityManager restoredTrades = new InMemoryTradeEntityManager();
+        SnapshotReport restored = MarketSnapshot.restore(file, restoredStocks, restoredTrades);
+
+        assertThat(written.getStockCount(), equalTo(2L));
+        assertThat(written.getTradeCount(), equalTo(100_001L));
+        assertThat(restored.getTradeCount(), equalTo(100_001L));
+        assertThat(restored.getSizeBytes(), equalTo(written.getSizeBytes()));
+        assertThat(written.getSizeBytes(), lessThan(100_001L * 10));
+        assertThat(restoredStocks.retrieveAll(), equalTo(stockEntityManager.retrieveAll()));
+        for (String stockSymbol : new String[]{"TEA", "GIN"}) {
+            assertThat(restoredTrades.retrieveAfter(stockSymbol, Long.MIN_VALUE),
+                    equalTo(tradeEntityManager.retrieveAfter(stockSymbol, Long.MIN_VALUE)));
+            assertThat(restoredTrades.aggregateAfter(stockSymbol, timestamp + 50_000),
+                    equalTo(tradeEntityManager.aggregateAfter(stockSymbol, timestamp + 50_000)));
+        }
+    }
+
+    @Test
+    public void thatOtherFilesAreNotRestored() throws Exception {
+        expectedException.expect(RepositoryException.class);
+        expectedException.expectMessage("Not a market snapshot.");
+        MarketSnapshot.restore(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}),
+                new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
+    }
+}
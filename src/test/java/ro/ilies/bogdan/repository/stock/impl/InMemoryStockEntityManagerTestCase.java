@@ -8,14 +8,19 @@ import org.mockito.InjectMocks;
 import org.mockito.runners.MockitoJUnitRunner;
 import ro.ilies.bogdan.model.Stock;
 import ro.ilies.bogdan.repository.exception.AlreadyExistsException;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
@@ -28,7 +33,7 @@ import static org.junit.Assert.assertThat;
 public class InMemoryStockEntityManagerTestCase {
 
     @InjectMocks
-    private InMemoryStockEntityManager stockEntityManager;
+    private InMemoryStockEntityManager stockEntityManager = new InMemoryStockEntityManager();
 
     @Rule
     public final ExpectedException expectedException = ExpectedException.none();
@@ -81,6 +86,35 @@ public class InMemoryStockEntityManagerTestCase {
         assertThat(retrievedStock.isPresent(), is(false));
     }
 
+    @Test
+    public void thatStockCanBeRetrievedBySymbolId() {
+        Stock newStock = new Stock("new_symbol",
+                Stock.Type.COMMON,
+                BigDecimal.valueOf(0d),
+                null,
+                BigDecimal.valueOf(100d));
+        stockEntityManager.store(newStock);
+
+        int symbolId = stockEntityManager.getSymbolDictionary().lookup(newStock.getStockSymbol());
+        assertThat(stockEntityManager.retrieve(symbolId).get(), equalTo(newStock));
+    }
+
+    @Test
+    public void thatNoStockIsRetrievedForSymbolIdWithoutStock() {
+        SymbolDictionary symbolDictionary = new SymbolDictionary();
+        InMemoryStockEntityManager stockEntityManager = new InMemoryStockEntityManager(symbolDictionary);
+        int symbolIdOfTradedSymbol = symbolDictionary.idOf("traded_symbol");
+        stockEntityManager.store(new Stock("new_symbol",
+                Stock.Type.COMMON,
+                BigDecimal.valueOf(0d),
+                null,
+                BigDecimal.valueOf(100d)));
+
+        assertThat(stockEntityManager.retrieve(symbolIdOfTradedSymbol).isPresent(), is(false));
+        assertThat(stockEntityManager.retrieve(SymbolDictionary.NO_ID).isPresent(), is(false));
+        assertThat(stockEntityManager.retrieve(100).isPresent(), is(false));
+    }
+
     @Test
     public void thatRetrieveAllReturnsAllStocks() {
         Stock newStock = new Stock("new_symbol",
@@ -109,4 +143,59 @@ public class InMemoryStockEntityManagerTestCase {
         assertThat(stocks, notNullValue());
         assertThat(stocks, empty());
     }
+
+    @Test
+    public void thatRetrieveAllReturnsTheSameSnapshotUntilAStockIsStored() {
+        Stock newStock = new Stock("new_symbol",
+                Stock.Type.COMMON,
+                BigDecimal.valueOf(0d),
+                null,
+                BigDecimal.valueOf(100d));
+        stockEntityManager.store(newStock);
+        List<Stock> stocks = stockEntityManager.retrieveAll();
+
+        assertThat(stockEntityManager.retrieveAll(), sameInstance(stocks));
+
+        stockEntityManager.store(new Stock("new_symbol1",
+                Stock.Type.COMMON,
+                BigDecimal.valueOf(0d),
+                null,
+                BigDecimal.valueOf(100d)));
+        assertThat(stocks, hasSize(1));
+        assertThat(stockEntityManager.retrieveAll(), hasSize(2));
+    }
+
+    @Test
+    public void thatOnlyOneOfConcurrentRegistrationsOfASymbolSucceeds() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger duplicates = new AtomicInteger();
+        try {
+            List<Future<?>> registrations = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                registrations.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        try {
+                            stockEntityManager.store(new Stock("symbol" + i, Stock.Type.COMMON,
+                                    BigDecimal.ZERO, null, BigDecimal.TEN));
+                        } catch (AlreadyExistsException e) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> registration : registrations) {
+                registration.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(stockEntityManager.retrieveAll(), hasSize(200));
+        assertThat(duplicates.get(), equalTo(200 * (threads - 1)));
+    }
 }
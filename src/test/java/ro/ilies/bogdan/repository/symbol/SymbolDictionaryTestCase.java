@@ -0,0 +1,84 @@
+package ro.ilies.bogdan.repository.symbol;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class SymbolDictionaryTestCase {
+
+    private final SymbolDictionary symbolDictionary = new SymbolDictionary();
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void thatSymbolsGetDenseIdsInOrderOfFirstUse() {
+        assertThat(symbolDictionary.idOf("TEA"), equalTo(0));
+        assertThat(symbolDictionary.idOf("POP"), equalTo(1));
+        assertThat(symbolDictionary.idOf("TEA"), equalTo(0));
+        assertThat(symbolDictionary.lookup("POP"), equalTo(1));
+        assertThat(symbolDictionary.symbolOf(1), equalTo("POP"));
+        assertThat(symbolDictionary.size(), equalTo(2));
+    }
+
+    @Test
+    public void thatLookupOfUnknownSymbolDoesNotAssignAnId() {
+        assertThat(symbolDictionary.lookup("TEA"), equalTo(SymbolDictionary.NO_ID));
+        assertThat(symbolDictionary.size(), equalTo(0));
+    }
+
+    @Test
+    public void thatUnknownIdCannotBeResolved() {
+        symbolDictionary.idOf("TEA");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Unknown symbol id: 1");
+        symbolDictionary.symbolOf(1);
+    }
+
+    @Test
+    public void thatConcurrentlyUsedSymbolsGetOneIdEach() throws Exception {
+        int threads = 8;
+        int symbols = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<int[]>> assignments = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                assignments.add(executor.submit(() -> {
+                    start.await();
+                    int[] ids = new int[symbols];
+                    for (int i = 0; i < symbols; i++) {
+                        ids[i] = symbolDictionary.idOf("symbol" + i);
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            int[] expectedIds = assignments.get(0).get(1, TimeUnit.MINUTES);
+            for (Future<int[]> assignment : assignments) {
+                int[] ids = assignment.get(1, TimeUnit.MINUTES);
+                for (int i = 0; i < symbols; i++) {
+                    assertThat(ids[i], equalTo(expectedIds[i]));
+                }
+            }
+            Set<Integer> distinctIds = new HashSet<>();
+            for (int i = 0; i < symbols; i++) {
+                distinctIds.add(expectedIds[i]);
+                assertThat(symbolDictionary.symbolOf(expectedIds[i]), equalTo("symbol" + i));
+            }
+            assertThat(distinctIds.size(), equalTo(symbols));
+            assertThat(symbolDictionary.size(), equalTo(symbols));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.runners.MockitoJUnitRunner;
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ColumnarTradeEntityManagerTestCase {
+
+    @InjectMocks
+    private ColumnarTradeEntityManager tradeEntityManager = new ColumnarTradeEntityManager();
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void thatTradesAfterSpecificTimestampCanBeRetrieved() {
+        long startTimeStamp = System.currentTimeMillis();
+        Trade newTrade = new Trade("STOCK1", startTimeStamp - 3*60*1000, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade1 = new Trade("STOCK1", startTimeStamp - 2*60*1000, 100, Trade.Type.SELL, BigDecimal.valueOf(1000.25));
+        Trade newTrade2 = new Trade("STOCK1", startTimeStamp - 1*60*1000, 100, Trade.Type.BUY, new BigDecimal("999.12345"));
+
+        tradeEntityManager.store(newTrade2);
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.store(newTrade1);
+
+        List<Trade> tradesInPastTwoMinutes = tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp - 2*60*1000);
+
+        assertThat(tradesInPastTwoMinutes, contains(newTrade1, newTrade2));
+        assertThat(tradesInPastTwoMinutes.get(0).getStockSymbol(), equalTo("STOCK1"));
+        assertThat(tradesInPastTwoMinutes.get(0).getType(), equalTo(Trade.Type.SELL));
+        assertThat(tradesInPastTwoMinutes.get(1).getType(), equalTo(Trade.Type.BUY));
+    }
+
+    @Test
+    public void thatTradesSharingATimestampAreAllKept() {
+        long timestamp = System.currentTimeMillis() - 60*1000;
+        Trade newTrade = new Trade("STOCK1", timestamp, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade1 = new Trade("STOCK1", timestamp, 50, Trade.Type.SELL, BigDecimal.valueOf(1100));
+
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.store(newTrade1);
+
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", timestamp), contains(newTrade, newTrade1));
+    }
+
+    @Test
+    public void thatSidesAreKeptWhenManyTradesAreInsertedOutOfOrder() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 200; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + 2 * i, 1,
+                    i % 3 == 0 ? Trade.Type.SELL : Trade.Type.BUY, BigDecimal.TEN));
+        }
+        Trade lateTrade = new Trade("STOCK1", startTimeStamp + 1, 1, Trade.Type.SELL, BigDecimal.TEN);
+        tradeEntityManager.store(lateTrade);
+
+        List<Trade> trades = tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp);
+
+        assertThat(trades, hasSize(201));
+        assertThat(trades.get(1), equalTo(lateTrade));
+        for (int i = 0; i < 200; i++) {
+            Trade trade = trades.get(i == 0 ? 0 : i + 1);
+            assertThat(trade.getType(), equalTo(i % 3 == 0 ? Trade.Type.SELL : Trade.Type.BUY));
+        }
+    }
+
+    @Test
+    public void thatAggregateAfterSpecificTimestampIsComputed() {
+        long startTimeStamp = System.currentTimeMillis();
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 3*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 2*60*1000, 10, Trade.Type.SELL, new BigDecimal("1000.5")));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 1*60*1000, 30, Trade.Type.BUY, new BigDecimal("500.25")));
+
+        TradeAggregate aggregate = tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 2*60*1000);
+
+        assertThat(aggregate, equalTo(new TradeAggregate(new BigDecimal("25012.5"), 40, 2)));
+    }
+
+    @Test
+    public void thatAggregateBySideOnlyCountsTradesOfThatSide() {
+        long startTimeStamp = System.currentTimeMillis();
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 3*60*1000, 20, Trade.Type.SELL, BigDecimal.valueOf(2000)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 2*60*1000, 10, Trade.Type.SELL, new BigDecimal("1000.5")));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 1*60*1000, 30, Trade.Type.BUY, new BigDecimal("500.25")));
+
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 2*60*1000, Trade.Type.SELL),
+                equalTo(new TradeAggregate(new BigDecimal("10005"), 10, 1)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 2*60*1000, Trade.Type.BUY),
+                equalTo(new TradeAggregate(new BigDecimal("15007.5"), 30, 1)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp, Trade.Type.BUY), equalTo(TradeAggregate.EMPTY));
+    }
+
+    @Test
+    public void thatRangeIsRetrievedAndAggregatedWithPricesOfDifferentScales() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Trade trade = new Trade("STOCK1", startTimeStamp, 10, Trade.Type.BUY, new BigDecimal("999.12345"));
+        Trade trade1 = new Trade("STOCK1", startTimeStamp + 1, 20, Trade.Type.SELL, BigDecimal.valueOf(1000));
+        Trade trade2 = new Trade("STOCK1", startTimeStamp + 2, 30, Trade.Type.BUY, new BigDecimal("999.5"));
+        Trade trade3 = new Trade("STOCK1", startTimeStamp + 3, 40, Trade.Type.BUY, new BigDecimal("1200"));
+        tradeEntityManager.store(trade);
+        tradeEntityManager.store(trade1);
+        tradeEntityManager.store(trade2);
+        tradeEntityManager.store(trade3);
+
+        assertThat(tradeEntityManager.retrieveBetween("STOCK1", startTimeStamp + 1, startTimeStamp + 3),
+                contains(trade1, trade2));
+        assertThat(tradeEntityManager.aggregateBetween("STOCK1", startTimeStamp, startTimeStamp + 3),
+                equalTo(new TradeAggregate(new BigDecimal("59976.2345"), 60, 3)));
+        assertThat(tradeEntityManager.priceRangeBetween("STOCK1", startTimeStamp, startTimeStamp + 3),
+                equalTo(Optional.of(new PriceRange(new BigDecimal("999.12345"), BigDecimal.valueOf(1000)))));
+        assertThat(tradeEntityManager.aggregateBetween("STOCK1", startTimeStamp + 3, startTimeStamp),
+                equalTo(TradeAggregate.EMPTY));
+        assertThat(tradeEntityManager.priceRangeBetween("STOCK1", startTimeStamp + 4, startTimeStamp + 10),
+                equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void thatAggregateFallsBackToBigDecimalWhenNotionalOverflowsLong() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        BigDecimal price = BigDecimal.valueOf(Long.MAX_VALUE / 2);
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp, 3, Trade.Type.BUY, price));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + 1, 2, Trade.Type.BUY, price));
+
+        TradeAggregate aggregate = tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp);
+
+        assertThat(aggregate, equalTo(new TradeAggregate(price.multiply(BigDecimal.valueOf(5)), 5, 2)));
+    }
+
+    @Test
+    public void thatWhenPriceDoesNotFitInALongThenStoreThrowsException() {
+        expectedException.expect(RepositoryException.class);
+        expectedException.expectMessage("Trade's price cannot be stored in columnar form");
+        tradeEntityManager.store(new Trade("STOCK1", System.currentTimeMillis(), 1, Trade.Type.BUY,
+                new BigDecimal(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TEN))));
+    }
+
+    @Test
+    public void thatWhenNoTradeExistsThenRetrieveAfterReturnsEmptyList() {
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), empty());
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", 0).isEmpty(), is(true));
+    }
+}
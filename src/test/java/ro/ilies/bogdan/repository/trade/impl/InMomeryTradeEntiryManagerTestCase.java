@@ -4,10 +4,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.runners.MockitoJUnitRunner;
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -19,7 +24,7 @@ import static org.hamcrest.Matchers.*;
 public class InMomeryTradeEntiryManagerTestCase {
 
     @InjectMocks
-    private InMemoryTradeEntityManager tradeEntityManager;
+    private InMemoryTradeEntityManager tradeEntityManager = new InMemoryTradeEntityManager();
 
     @Test
     public void thatTradesCanBeStored() {
@@ -77,4 +82,371 @@ public class InMomeryTradeEntiryManagerTestCase {
         assertThat(tradesInPastTwoMinutes, notNullValue());
         assertThat(tradesInPastTwoMinutes, empty());
     }
+
+    @Test
+    public void thatAggregateAfterSpecificTimestampIsComputed() {
+        long startTimeStamp = System.currentTimeMillis();
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 3*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 2*60*1000, 10, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 1*60*1000, 30, Trade.Type.BUY, BigDecimal.valueOf(500)));
+
+        TradeAggregate aggregate = tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 2*60*1000);
+
+        assertThat(aggregate, equalTo(new TradeAggregate(BigDecimal.valueOf(25000), 40, 2)));
+    }
+
+    @Test
+    public void thatAggregateAfterSpecificTimestampAccountsForTradesStoredOutOfOrder() {
+        long startTimeStamp = System.currentTimeMillis();
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 1*60*1000, 30, Trade.Type.BUY, BigDecimal.valueOf(500)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 3*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 2*60*1000, 10, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 3*60*1000),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(65000), 60, 3)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 2*60*1000),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(25000), 40, 2)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp - 1*60*1000),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(15000), 30, 1)));
+    }
+
+    @Test
+    public void thatWhenNoTradeExistsThenAggregateAfterReturnsEmptyAggregate() {
+        TradeAggregate aggregate = tradeEntityManager.aggregateAfter("STOCK1", System.currentTimeMillis() - 2*60*1000);
+
+        assertThat(aggregate.isEmpty(), is(true));
+    }
+
+    @Test
+    public void thatTradesCanBeQueriedBySymbolId() {
+        long startTimeStamp = System.currentTimeMillis();
+        Trade oldTrade = new Trade("STOCK1", startTimeStamp - 2*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade newTrade = new Trade("STOCK1", startTimeStamp - 1*60*1000, 30, Trade.Type.BUY, BigDecimal.valueOf(500));
+        tradeEntityManager.store(new Trade("STOCK2", startTimeStamp, 10, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        tradeEntityManager.store(oldTrade);
+        tradeEntityManager.store(newTrade);
+
+        int symbolId = tradeEntityManager.getSymbolDictionary().lookup("STOCK1");
+
+        assertThat(tradeEntityManager.retrieveAfter(symbolId, startTimeStamp - 2*60*1000), contains(oldTrade, newTrade));
+        assertThat(tradeEntityManager.aggregateAfter(symbolId, startTimeStamp - 1*60*1000),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(15000), 30, 1)));
+    }
+
+    @Test
+    public void thatSymbolIdWithoutTradesHasNoTrades() {
+        int symbolId = tradeEntityManager.getSymbolDictionary().idOf("STOCK1");
+
+        assertThat(tradeEntityManager.retrieveAfter(symbolId, 0), empty());
+        assertThat(tradeEntityManager.aggregateAfter(symbolId, 0).isEmpty(), is(true));
+    }
+
+    @Test
+    public void thatTradesSharingATimestampAreAllKeptInStoreOrder() {
+        long timestamp = System.currentTimeMillis() - 60*1000;
+        Trade olderTrade = new Trade("STOCK1", timestamp - 1, 10, Trade.Type.SELL, BigDecimal.valueOf(900));
+        Trade newTrade = new Trade("STOCK1", timestamp, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade1 = new Trade("STOCK1", timestamp, 50, Trade.Type.SELL, BigDecimal.valueOf(1100));
+        Trade newTrade2 = new Trade("STOCK1", timestamp, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.store(newTrade1);
+        tradeEntityManager.store(olderTrade);
+        tradeEntityManager.store(newTrade2);
+
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", timestamp), contains(newTrade, newTrade1, newTrade2));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", timestamp - 1), contains(olderTrade, newTrade, newTrade1, newTrade2));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", timestamp),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(255000), 250, 3)));
+    }
+
+    @Test
+    public void thatBatchOfTradesIsStoredInTimestampOrder() {
+        long startTimeStamp = System.currentTimeMillis();
+        Trade newTrade = new Trade("STOCK1", startTimeStamp - 3*60*1000, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade1 = new Trade("STOCK2", startTimeStamp - 2*60*1000, 100, Trade.Type.SELL, BigDecimal.valueOf(1000));
+        Trade newTrade2 = new Trade("STOCK1", startTimeStamp - 1*60*1000, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade3 = new Trade("STOCK1", startTimeStamp - 2*60*1000, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+
+        tradeEntityManager.storeAll(Arrays.asList(newTrade2, newTrade, newTrade1, newTrade3));
+
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), contains(newTrade, newTrade3, newTrade2));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK2", 0), contains(newTrade1));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", 0).getCount(), equalTo(3L));
+    }
+
+    @Test
+    public void thatTradesStoredOutOfOrderAcrossBucketsAreRetrievedAndAggregatedInTimestampOrder() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited().withBucketMillis(10));
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Random random = new Random(42);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Trade trade = new Trade("STOCK1", startTimeStamp + random.nextInt(300), 1 + random.nextInt(100),
+                    Trade.Type.BUY, BigDecimal.valueOf(1 + random.nextInt(1000)));
+            trades.add(trade);
+            tradeEntityManager.store(trade);
+        }
+        trades.sort(Comparator.comparingLong(Trade::getTimestamp));
+
+        for (int offset = -1; offset <= 301; offset += 7) {
+            long timestamp = startTimeStamp + offset;
+            List<Trade> expectedTrades = trades.stream()
+                    .filter(trade -> trade.getTimestamp() >= timestamp)
+                    .collect(Collectors.toList());
+            TradeAggregate expectedAggregate = expectedTrades.stream()
+                    .map(TradeAggregate::of)
+                    .reduce(TradeAggregate.EMPTY, TradeAggregate::add);
+
+            assertThat(tradeEntityManager.retrieveAfter("STOCK1", timestamp), equalTo(expectedTrades));
+            assertThat(tradeEntityManager.aggregateAfter("STOCK1", timestamp), equalTo(expectedAggregate));
+        }
+    }
+
+    @Test
+    public void thatAggregatesBySideAccountForTradesStoredOutOfOrderAcrossBuckets() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited().withBucketMillis(10));
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Random random = new Random(7);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Trade trade = new Trade("STOCK1", startTimeStamp + random.nextInt(300), 1 + random.nextInt(100),
+                    random.nextBoolean() ? Trade.Type.BUY : Trade.Type.SELL, BigDecimal.valueOf(1 + random.nextInt(1000)));
+            trades.add(trade);
+            tradeEntityManager.store(trade);
+        }
+
+        for (int offset = -1; offset <= 301; offset += 7) {
+            long timestamp = startTimeStamp + offset;
+            for (Trade.Type side : Trade.Type.values()) {
+                TradeAggregate expectedAggregate = trades.stream()
+                        .filter(trade -> trade.getTimestamp() >= timestamp && trade.getType() == side)
+                        .map(TradeAggregate::of)
+                        .reduce(TradeAggregate.EMPTY, TradeAggregate::add);
+
+                assertThat(tradeEntityManager.aggregateAfter("STOCK1", timestamp, side), equalTo(expectedAggregate));
+            }
+        }
+        assertThat(tradeEntityManager.aggregateAfter("STOCK2", startTimeStamp, Trade.Type.SELL), equalTo(TradeAggregate.EMPTY));
+    }
+
+    @Test
+    public void thatRangesAreRetrievedAndAggregatedAcrossBuckets() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited().withBucketMillis(10));
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Random random = new Random(11);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Trade trade = new Trade("STOCK1", startTimeStamp + random.nextInt(300), 1 + random.nextInt(100),
+                    Trade.Type.BUY, BigDecimal.valueOf(1 + random.nextInt(100_000), 2));
+            trades.add(trade);
+            tradeEntityManager.store(trade);
+        }
+        trades.sort(Comparator.comparingLong(Trade::getTimestamp));
+
+        for (int start = -1; start <= 301; start += 13) {
+            for (int end = start - 5; end <= 305; end += 11) {
+                long from = startTimeStamp + start;
+                long to = startTimeStamp + end;
+                List<Trade> expectedTrades = trades.stream()
+                        .filter(trade -> trade.getTimestamp() >= from && trade.getTimestamp() < to)
+                        .collect(Collectors.toList());
+                TradeAggregate expectedAggregate = expectedTrades.stream()
+                        .map(TradeAggregate::of)
+                        .reduce(TradeAggregate.EMPTY, TradeAggregate::add);
+                Optional<PriceRange> expectedRange = expectedTrades.isEmpty() ? Optional.empty() : Optional.of(new PriceRange(
+                        expectedTrades.stream().map(Trade::getPrice).min(BigDecimal::compareTo).get(),
+                        expectedTrades.stream().map(Trade::getPrice).max(BigDecimal::compareTo).get()));
+
+                assertThat(tradeEntityManager.retrieveBetween("STOCK1", from, to), equalTo(expectedTrades));
+                assertThat(tradeEntityManager.aggregateBetween("STOCK1", from, to), equalTo(expectedAggregate));
+                assertThat(tradeEntityManager.priceRangeBetween("STOCK1", from, to), equalTo(expectedRange));
+            }
+        }
+        assertThat(tradeEntityManager.aggregateBetween("STOCK2", startTimeStamp, startTimeStamp + 300),
+                equalTo(TradeAggregate.EMPTY));
+        assertThat(tradeEntityManager.priceRangeBetween("STOCK2", startTimeStamp, startTimeStamp + 300),
+                equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void thatCursorKeepsTheTradesStoredBeforeItWasOpened() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited()
+                .withMaxTradesPerSymbol(1).withBucketMillis(10));
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 40; i += 2) {
+            Trade trade = new Trade("STOCK1", startTimeStamp + i, 10, Trade.Type.BUY, BigDecimal.valueOf(i + 1));
+            trades.add(trade);
+            tradeEntityManager.store(trade);
+        }
+
+        Spliterator<Trade> cursor = tradeEntityManager.spliteratorAfter("STOCK1", startTimeStamp + 5);
+        for (int i = 1; i < 40; i += 2) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 10, Trade.Type.SELL, BigDecimal.ONE));
+        }
+        tradeEntityManager.evict();
+
+        assertThat(cursor.getExactSizeIfKnown(), equalTo(17L));
+        List<Trade> traversed = new ArrayList<>();
+        cursor.forEachRemaining(traversed::add);
+        assertThat(traversed, equalTo(trades.subList(3, trades.size())));
+        assertThat(tradeEntityManager.streamAfter("STOCK1", startTimeStamp + 5).count(), lessThan(17L));
+    }
+
+    @Test
+    public void thatCursorSplitsIntoExactlySizedPartsForParallelStreams() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited().withBucketMillis(10));
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Random random = new Random(13);
+        for (int i = 0; i < 1000; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + random.nextInt(500), 1 + random.nextInt(100),
+                    Trade.Type.BUY, BigDecimal.valueOf(1 + random.nextInt(100_000), 2)));
+        }
+
+        assertThat(tradeEntityManager.streamBetween("STOCK1", startTimeStamp + 37, startTimeStamp + 421).parallel()
+                        .map(TradeAggregate::of)
+                        .reduce(TradeAggregate.EMPTY, TradeAggregate::add),
+                equalTo(tradeEntityManager.aggregateBetween("STOCK1", startTimeStamp + 37, startTimeStamp + 421)));
+        assertThat(tradeEntityManager.streamAfter("STOCK1", startTimeStamp + 37).parallel().collect(Collectors.toList()),
+                equalTo(tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp + 37)));
+
+        Spliterator<Trade> cursor = tradeEntityManager.spliteratorAfter("STOCK1", startTimeStamp);
+        Spliterator<Trade> prefix = cursor.trySplit();
+        assertThat(prefix.estimateSize() + cursor.estimateSize(), equalTo(1000L));
+        assertThat(prefix.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED | Spliterator.IMMUTABLE), is(true));
+        assertThat(tradeEntityManager.spliteratorAfter("STOCK2", startTimeStamp).estimateSize(), equalTo(0L));
+    }
+
+    @Test
+    public void thatBucketsOlderThanMaximumAgeAreEvicted() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited()
+                .withBucketMillis(60*1000)
+                .withMaxAgeMillis(10*60*1000));
+        long now = System.currentTimeMillis();
+        long currentBucket = now / (60*1000) * (60*1000);
+        tradeEntityManager.store(new Trade("STOCK1", currentBucket - 20*60*1000, 10, Trade.Type.BUY, BigDecimal.TEN));
+        tradeEntityManager.store(new Trade("STOCK1", currentBucket - 20*60*1000 + 1, 10, Trade.Type.BUY, BigDecimal.TEN));
+        tradeEntityManager.store(new Trade("STOCK2", currentBucket - 15*60*1000, 10, Trade.Type.BUY, BigDecimal.TEN));
+        Trade recentTrade = new Trade("STOCK1", currentBucket - 5*60*1000, 20, Trade.Type.SELL, BigDecimal.ONE);
+        tradeEntityManager.store(recentTrade);
+
+        long evicted = tradeEntityManager.evict();
+
+        assertThat(evicted, equalTo(3L));
+        assertThat(tradeEntityManager.getEvictedTradeCount(), equalTo(3L));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), contains(recentTrade));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK2", 0), empty());
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", 0), equalTo(TradeAggregate.of(recentTrade)));
+        tradeEntityManager.close();
+    }
+
+    @Test
+    public void thatOldestBucketsAreEvictedWhenSymbolHasTooManyTrades() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited()
+                .withBucketMillis(10)
+                .withMaxTradesPerSymbol(15));
+        long startTimeStamp = System.currentTimeMillis() / 10 * 10 - 1000;
+        for (int i = 0; i < 40; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 1, Trade.Type.BUY, BigDecimal.TEN));
+        }
+
+        assertThat(tradeEntityManager.evict(), equalTo(30L));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), hasSize(10));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0).get(0).getTimestamp(), equalTo(startTimeStamp + 30));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", 0).getCount(), equalTo(10L));
+        tradeEntityManager.close();
+    }
+
+    @Test
+    public void thatGloballyOldestBucketsAreEvictedWhenMemoryBudgetIsExceeded() {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited()
+                .withBucketMillis(10)
+                .withMaxMemoryBytes(25 * TradeRetentionPolicy.ESTIMATED_BYTES_PER_TRADE));
+        long startTimeStamp = System.currentTimeMillis() / 10 * 10 - 1000;
+        for (int i = 0; i < 20; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 1, Trade.Type.BUY, BigDecimal.TEN));
+            tradeEntityManager.store(new Trade("STOCK2", startTimeStamp + 5 + i, 1, Trade.Type.BUY, BigDecimal.TEN));
+        }
+
+        assertThat(tradeEntityManager.evict(), equalTo(15L));
+        assertThat(tradeEntityManager.size(), equalTo(25L));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), hasSize(10));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK2", 0), hasSize(15));
+        tradeEntityManager.close();
+    }
+
+    @Test
+    public void thatTradesAreEvictedInTheBackground() throws InterruptedException {
+        tradeEntityManager = new InMemoryTradeEntityManager(TradeRetentionPolicy.unlimited()
+                .withBucketMillis(10)
+                .withMaxAgeMillis(60*1000)
+                .withEvictionIntervalMillis(10));
+        tradeEntityManager.store(new Trade("STOCK1", System.currentTimeMillis() - 2*60*1000, 1, Trade.Type.BUY, BigDecimal.TEN));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tradeEntityManager.getEvictedTradeCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(tradeEntityManager.getEvictedTradeCount(), equalTo(1L));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), empty());
+        tradeEntityManager.close();
+    }
+
+    @Test
+    public void thatNoTradeIsLostWhenStoredConcurrently() throws Exception {
+        int writers = 8;
+        int tradesPerWriter = 5000;
+        String[] stockSymbols = {"STOCK1", "STOCK2", "STOCK3", "STOCK4"};
+        long startTimeStamp = System.currentTimeMillis() - writers * tradesPerWriter;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                long firstTimestamp = startTimeStamp + writer * tradesPerWriter;
+                writes.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < tradesPerWriter; i++) {
+                        tradeEntityManager.store(new Trade(stockSymbols[i % stockSymbols.length], firstTimestamp + i,
+                                1, Trade.Type.BUY, BigDecimal.TEN));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int reader = 0; reader < 2; reader++) {
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        for (String stockSymbol : stockSymbols) {
+                            TradeAggregate aggregate = tradeEntityManager.aggregateAfter(stockSymbol, startTimeStamp);
+                            assertThat(aggregate.getQuantity(), equalTo(aggregate.getCount()));
+                            assertThat(aggregate.getNotional(), comparesEqualTo(BigDecimal.TEN.multiply(BigDecimal.valueOf(aggregate.getCount()))));
+                            tradeEntityManager.retrieveAfter(stockSymbol, startTimeStamp);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> write : writes) {
+                write.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> read : reads) {
+                read.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int tradesPerSymbol = writers * tradesPerWriter / stockSymbols.length;
+        for (String stockSymbol : stockSymbols) {
+            assertThat(tradeEntityManager.retrieveAfter(stockSymbol, startTimeStamp), hasSize(tradesPerSymbol));
+            assertThat(tradeEntityManager.aggregateAfter(stockSymbol, startTimeStamp).getCount(), equalTo((long) tradesPerSymbol));
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import ro.ilies.bogdan.model.PriceRange;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeAggregate;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class MappedTradeEntityManagerTestCase {
+
+    private static final int SEGMENT_CAPACITY = 4;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    private Path directory;
+    private MappedTradeEntityManager tradeEntityManager;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder("journal").toPath();
+        tradeEntityManager = new MappedTradeEntityManager(directory, SEGMENT_CAPACITY);
+    }
+
+    @After
+    public void tearDown() {
+        tradeEntityManager.close();
+    }
+
+    @Test
+    public void thatTradesAfterSpecificTimestampCanBeRetrieved() {
+        long startTimeStamp = System.currentTimeMillis();
+        Trade newTrade = new Trade("STOCK1", startTimeStamp - 3*60*1000, 100, Trade.Type.BUY, BigDecimal.valueOf(1000));
+        Trade newTrade1 = new Trade("STOCK1", startTimeStamp - 2*60*1000, 100, Trade.Type.SELL, BigDecimal.valueOf(1000.25));
+        Trade newTrade2 = new Trade("STOCK1", startTimeStamp - 2*60*1000, 50, Trade.Type.BUY, new BigDecimal("999.12345"));
+
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.store(newTrade1);
+        tradeEntityManager.store(newTrade2);
+
+        List<Trade> tradesInPastTwoMinutes = tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp - 2*60*1000);
+
+        assertThat(tradesInPastTwoMinutes, contains(newTrade1, newTrade2));
+        assertThat(tradesInPastTwoMinutes.get(0).getStockSymbol(), equalTo("STOCK1"));
+    }
+
+    @Test
+    public void thatTradesSpanningSeveralSegmentsAreRetrievedAndAggregated() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 3 * SEGMENT_CAPACITY + 1; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 10, Trade.Type.BUY, BigDecimal.valueOf(i)));
+        }
+
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp + 3), hasSize(10));
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", startTimeStamp + 3).get(0).getPrice(), equalTo(BigDecimal.valueOf(3)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp + 3),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(750), 100, 10)));
+    }
+
+    @Test
+    public void thatTradesSpanningSeveralSegmentsAreAggregatedBySide() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 3 * SEGMENT_CAPACITY + 1; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 10,
+                    i % 2 == 0 ? Trade.Type.BUY : Trade.Type.SELL, BigDecimal.valueOf(i)));
+        }
+
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp + 3, Trade.Type.BUY),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(400), 50, 5)));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", startTimeStamp + 3, Trade.Type.SELL),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(350), 50, 5)));
+    }
+
+    @Test
+    public void thatRangesSpanningSeveralSegmentsAreRetrievedAndAggregated() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 3 * SEGMENT_CAPACITY + 1; i++) {
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp + i, 10, Trade.Type.BUY,
+                    BigDecimal.valueOf(i % 5 == 0 ? 100 - i : i)));
+        }
+
+        assertThat(tradeEntityManager.retrieveBetween("STOCK1", startTimeStamp + 3, startTimeStamp + 9), hasSize(6));
+        assertThat(tradeEntityManager.aggregateBetween("STOCK1", startTimeStamp + 3, startTimeStamp + 9),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(1230), 60, 6)));
+        assertThat(tradeEntityManager.priceRangeBetween("STOCK1", startTimeStamp + 3, startTimeStamp + 9),
+                equalTo(Optional.of(new PriceRange(BigDecimal.valueOf(3), BigDecimal.valueOf(95)))));
+        assertThat(tradeEntityManager.priceRangeBetween("STOCK1", startTimeStamp + 100, startTimeStamp + 200),
+                equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void thatTradesAreRecoveredAfterReopening() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Trade newTrade = new Trade("STOCK/1", startTimeStamp, 100, Trade.Type.SELL, new BigDecimal("12.5"));
+        for (int i = 0; i < SEGMENT_CAPACITY; i++) {
+            tradeEntityManager.store(new Trade("STOCK2", startTimeStamp + i, 1, Trade.Type.BUY, BigDecimal.ONE));
+        }
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.close();
+
+        tradeEntityManager = new MappedTradeEntityManager(directory, SEGMENT_CAPACITY);
+        tradeEntityManager.store(new Trade("STOCK2", startTimeStamp + SEGMENT_CAPACITY, 1, Trade.Type.BUY, BigDecimal.ONE));
+
+        assertThat(tradeEntityManager.retrieveAfter("STOCK/1", startTimeStamp), contains(newTrade));
+        assertThat(tradeEntityManager.aggregateAfter("STOCK2", startTimeStamp).getCount(), equalTo(SEGMENT_CAPACITY + 1L));
+    }
+
+    @Test
+    public void thatRecoveredTradesCanBeQueriedBySymbolId() {
+        long startTimeStamp = System.currentTimeMillis() - 1000;
+        Trade oldTrade = new Trade("STOCK1", startTimeStamp, 20, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade newTrade = new Trade("STOCK1", startTimeStamp + 10, 30, Trade.Type.SELL, BigDecimal.valueOf(500));
+        tradeEntityManager.store(new Trade("STOCK2", startTimeStamp, 10, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        tradeEntityManager.store(oldTrade);
+        tradeEntityManager.store(newTrade);
+        tradeEntityManager.close();
+
+        tradeEntityManager = new MappedTradeEntityManager(directory, SEGMENT_CAPACITY);
+        int symbolId = tradeEntityManager.getSymbolDictionary().lookup("STOCK1");
+
+        assertThat(tradeEntityManager.retrieveAfter(symbolId, startTimeStamp), contains(oldTrade, newTrade));
+        assertThat(tradeEntityManager.aggregateAfter(symbolId, startTimeStamp + 10),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(15000), 30, 1)));
+        assertThat(tradeEntityManager.aggregateAfter(symbolId, startTimeStamp, Trade.Type.BUY),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(40000), 20, 1)));
+        assertThat(tradeEntityManager.aggregateBetween(symbolId, startTimeStamp, startTimeStamp + 5),
+                equalTo(new TradeAggregate(BigDecimal.valueOf(40000), 20, 1)));
+    }
+
+    @Test
+    public void thatWhenTradeIsOlderThanLastJournaledTradeThenStoreThrowsException() {
+        long startTimeStamp = System.currentTimeMillis();
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp, 1, Trade.Type.BUY, BigDecimal.ONE));
+
+        expectedException.expect(RepositoryException.class);
+        expectedException.expectMessage("Trades must be journaled in timestamp order.");
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp - 1, 1, Trade.Type.BUY, BigDecimal.ONE));
+    }
+
+    @Test
+    public void thatWhenNoTradeExistsThenRetrieveAfterReturnsEmptyList() {
+        assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), empty());
+        assertThat(tradeEntityManager.aggregateAfter("STOCK1", 0).isEmpty(), is(true));
+    }
+}
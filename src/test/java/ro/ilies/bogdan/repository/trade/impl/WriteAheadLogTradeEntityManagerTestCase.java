@@ -0,0 +1,209 @@
+package ro.ilies.bogdan.repository.trade.impl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class WriteAheadLogTradeEntityManagerTestCase {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    private Path logFile;
+    private long startTimeStamp;
+
+    @Before
+    public void setUp() throws IOException {
+        logFile = temporaryFolder.getRoot().toPath().resolve("trades.wal");
+        startTimeStamp = System.currentTimeMillis();
+    }
+
+    @Test
+    public void thatLoggedTradesAreStoredAndReplayedOnReopening() {
+        Trade trade = new Trade("STOCK1", startTimeStamp - 2000, 20, Trade.Type.BUY, BigDecimal.valueOf(20.5d));
+        Trade otherTrade = new Trade("STOCK2", startTimeStamp - 1000, 10, Trade.Type.SELL,
+                new BigDecimal("123456789012345678901234567890.25"));
+        InMemoryTradeEntityManager store = new InMemoryTradeEntityManager();
+        try (WriteAheadLogTradeEntityManager tradeEntityManager = new WriteAheadLogTradeEntityManager(store, logFile)) {
+            tradeEntityManager.store(trade);
+            tradeEntityManager.storeAll(Arrays.asList(otherTrade, otherTrade));
+            assertThat(store.retrieveAfter("STOCK1", 0), contains(trade));
+        }
+
+        InMemoryTradeEntityManager recoveredStore = new InMemoryTradeEntityManager();
+        try (WriteAheadLogTradeEntityManager tradeEntityManager = new WriteAheadLogTradeEntityManager(recoveredStore, logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo(3L));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), contains(trade));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK2", 0), contains(otherTrade, otherTrade));
+            assertThat(tradeEntityManager.aggregateAfter("STOCK2", 0), equalTo(store.aggregateAfter("STOCK2", 0)));
+        }
+    }
+
+    @Test
+    public void thatTornRecordIsDroppedOnRecovery() throws IOException {
+        Trade trade = new Trade("STOCK1", startTimeStamp - 2000, 20, Trade.Type.BUY, BigDecimal.valueOf(20));
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile)) {
+            tradeEntityManager.store(trade);
+        }
+        long validLength = Files.size(logFile);
+        Files.write(logFile, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo(1L));
+            assertThat(Files.size(logFile), equalTo(validLength));
+            tradeEntityManager.store(trade);
+        }
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo(2L));
+        }
+    }
+
+    @Test
+    public void thatConcurrentWritersShareCommits() throws Exception {
+        int threads = 8;
+        int tradesPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try (WriteAheadLogTradeEntityManager tradeEntityManager = new WriteAheadLogTradeEntityManager(
+                new InMemoryTradeEntityManager(), logFile, GroupCommitPolicy.defaults().withMaxDelayMicros(2000))) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                String stockSymbol = "STOCK" + thread;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < tradesPerThread; i++) {
+                        tradeEntityManager.store(new Trade(stockSymbol, startTimeStamp - i, 1, Trade.Type.BUY, BigDecimal.TEN));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            assertThat(tradeEntityManager.getCommittedTradeCount(), equalTo((long) threads * tradesPerThread));
+            assertThat(tradeEntityManager.getCommitCount(), lessThan((long) threads * tradesPerThread));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo((long) threads * tradesPerThread));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK3", 0), hasSize(tradesPerThread));
+        }
+    }
+
+    @Test
+    public void thatTradeRefusedByTheStoreIsNotRecovered() {
+        Trade trade = new Trade("STOCK1", startTimeStamp - 2000, 20, Trade.Type.BUY, BigDecimal.valueOf(20));
+        Trade unstorableTrade = new Trade("STOCK1", startTimeStamp - 1000, 20, Trade.Type.BUY,
+                new BigDecimal("123456789012345678901234567890"));
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new ColumnarTradeEntityManager(), logFile)) {
+            tradeEntityManager.store(trade);
+            try {
+                tradeEntityManager.store(unstorableTrade);
+            } catch (RepositoryException expected) {
+                // refused by the columnar store after being logged
+            }
+        }
+
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new ColumnarTradeEntityManager(), logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo(1L));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), contains(trade));
+        }
+    }
+
+    @Test
+    public void thatTradesAroundARefusedOneInAMultiSymbolLogAreRecoveredOnce() {
+        Trade trade = new Trade("STOCK1", startTimeStamp - 3000, 20, Trade.Type.BUY, BigDecimal.valueOf(20));
+        Trade otherTrade = new Trade("STOCK2", startTimeStamp - 3000, 10, Trade.Type.SELL, BigDecimal.valueOf(30));
+        Trade unstorableTrade = new Trade("STOCK3", startTimeStamp - 2000, 20, Trade.Type.BUY,
+                new BigDecimal("123456789012345678901234567890"));
+        Trade laterTrade = new Trade("STOCK1", startTimeStamp - 1000, 5, Trade.Type.SELL, BigDecimal.valueOf(25));
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new ColumnarTradeEntityManager(), logFile)) {
+            tradeEntityManager.store(trade);
+            tradeEntityManager.store(otherTrade);
+            try {
+                tradeEntityManager.store(unstorableTrade);
+            } catch (RepositoryException expected) {
+                // refused by the columnar store after being logged
+            }
+            tradeEntityManager.store(laterTrade);
+        }
+
+        try (WriteAheadLogTradeEntityManager tradeEntityManager =
+                     new WriteAheadLogTradeEntityManager(new ColumnarTradeEntityManager(), logFile)) {
+            assertThat(tradeEntityManager.getRecoveredTradeCount(), equalTo(3L));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK1", 0), contains(trade, laterTrade));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK2", 0), contains(otherTrade));
+            assertThat(tradeEntityManager.retrieveAfter("STOCK3", 0), hasSize(0));
+        }
+    }
+
+    @Test
+    public void thatWritersAreFailedWhenTheCommittingThreadDies() throws Exception {
+        InMemoryTradeEntityManager brokenStore = new InMemoryTradeEntityManager() {
+            @Override
+            public void storeAll(Collection<Trade> trades) {
+                throw new LinkageError("Store is broken.");
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WriteAheadLogTradeEntityManager tradeEntityManager = new WriteAheadLogTradeEntityManager(brokenStore, logFile)) {
+            Future<?> writer = executor.submit(() -> tradeEntityManager.store(
+                    new Trade("STOCK1", startTimeStamp, 20, Trade.Type.BUY, BigDecimal.valueOf(20))));
+            try {
+                writer.get(1, TimeUnit.MINUTES);
+                fail("Failure of the committing thread should reach the writer.");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getMessage(), equalTo("Write-ahead log failed: java.lang.LinkageError: Store is broken."));
+            }
+
+            expectedException.expect(RepositoryException.class);
+            expectedException.expectMessage("Write-ahead log failed: java.lang.LinkageError: Store is broken.");
+            tradeEntityManager.store(new Trade("STOCK1", startTimeStamp, 20, Trade.Type.BUY, BigDecimal.valueOf(20)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void thatClosedLogRefusesTrades() {
+        WriteAheadLogTradeEntityManager tradeEntityManager =
+                new WriteAheadLogTradeEntityManager(new InMemoryTradeEntityManager(), logFile);
+        tradeEntityManager.close();
+
+        expectedException.expect(RepositoryException.class);
+        expectedException.expectMessage("Write-ahead log is closed.");
+        tradeEntityManager.store(new Trade("STOCK1", startTimeStamp, 20, Trade.Type.BUY, BigDecimal.valueOf(20)));
+    }
+}
@@ -0,0 +1,101 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import ro.ilies.bogdan.model.Bar;
+import ro.ilies.bogdan.model.Trade;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static ro.ilies.bogdan.service.impl.StockServiceImpl.PRECISION_DIGITS;
+
+public class BarAggregatorTestCase {
+
+    private final BarAggregator barAggregator = new BarAggregator(
+            new BigDecimalNumericEngine(PRECISION_DIGITS), 3, BarAggregator.ONE_SECOND, BarAggregator.ONE_MINUTE);
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void thatBarIsBuiltFromTheTradesOfItsInterval() {
+        barAggregator.onTrade(trade("ALE", 60_000, 10, 100));
+        barAggregator.onTrade(trade("ALE", 60_500, 20, 130));
+        barAggregator.onTrade(trade("ALE", 61_000, 10, 90));
+        barAggregator.onTrade(trade("ALE", 62_000, 10, 110));
+        barAggregator.onTrade(trade("POP", 60_000, 10, 5));
+
+        List<Bar> bars = barAggregator.lastBars("ALE", BarAggregator.ONE_MINUTE, 10);
+
+        assertThat(bars, hasSize(1));
+        Bar bar = bars.get(0);
+        assertThat(bar.getStartTimestamp(), equalTo(60_000L));
+        assertThat(bar.getOpen(), equalTo(BigDecimal.valueOf(100)));
+        assertThat(bar.getHigh(), equalTo(BigDecimal.valueOf(130)));
+        assertThat(bar.getLow(), equalTo(BigDecimal.valueOf(90)));
+        assertThat(bar.getClose(), equalTo(BigDecimal.valueOf(110)));
+        assertThat(bar.getVolume(), equalTo(50L));
+        assertThat(bar.getVolumeWeightedPrice(), equalTo(BigDecimal.valueOf(112).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatLateTradesUpdateOpenAndCloseByTimestamp() {
+        barAggregator.onTrade(trade("ALE", 60_500, 10, 100));
+        barAggregator.onTrade(trade("ALE", 60_100, 10, 80));
+        barAggregator.onTrade(trade("ALE", 60_300, 10, 120));
+
+        Bar bar = barAggregator.lastBars("ALE", BarAggregator.ONE_MINUTE, 1).get(0);
+
+        assertThat(bar.getOpen(), equalTo(BigDecimal.valueOf(80)));
+        assertThat(bar.getClose(), equalTo(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void thatLastBarsAreReturnedOldestFirstAndOnlyTheMostRecentAreKept() {
+        for (long second = 0; second < 5; second++) {
+            barAggregator.onTrade(trade("ALE", second * 1000, 10, 100 + second));
+        }
+
+        assertThat(startsOf(barAggregator.lastBars("ALE", BarAggregator.ONE_SECOND, 10)), contains(2000L, 3000L, 4000L));
+        assertThat(startsOf(barAggregator.lastBars("ALE", BarAggregator.ONE_SECOND, 2)), contains(3000L, 4000L));
+    }
+
+    @Test
+    public void thatLateTradeOfAMissingIntervalIsInsertedInOrder() {
+        barAggregator.onTrade(trade("ALE", 1000, 10, 100));
+        barAggregator.onTrade(trade("ALE", 5000, 10, 100));
+        barAggregator.onTrade(trade("ALE", 9000, 10, 100));
+        barAggregator.onTrade(trade("ALE", 7000, 10, 100));
+        barAggregator.onTrade(trade("ALE", 500, 10, 100));
+
+        assertThat(startsOf(barAggregator.lastBars("ALE", BarAggregator.ONE_SECOND, 10)), contains(5000L, 7000L, 9000L));
+    }
+
+    @Test
+    public void thatStockWithoutTradesHasNoBars() {
+        assertThat(barAggregator.lastBars("ALE", BarAggregator.ONE_SECOND, 10), empty());
+    }
+
+    @Test
+    public void thatBarsOfAnUnknownIntervalCannotBeFetched() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("No bars are kept for interval: 300000");
+        barAggregator.lastBars("ALE", BarAggregator.FIVE_MINUTES, 10);
+    }
+
+    private static Trade trade(String stockSymbol, long timestamp, int quantity, long price) {
+        return new Trade(stockSymbol, timestamp, quantity, Trade.Type.BUY, BigDecimal.valueOf(price));
+    }
+
+    private static List<Long> startsOf(List<Bar> bars) {
+        return bars.stream().map(Bar::getStartTimestamp).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,131 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.exception.StockDoesNotExistException;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingStockServiceTestCase {
+
+    @Mock
+    private StockService delegate;
+
+    private CachingStockService stockService;
+
+    @Before
+    public void setUp() {
+        stockService = new CachingStockService(delegate, 2);
+        when(delegate.dividendYield("POP", BigDecimal.valueOf(100))).thenReturn(BigDecimal.valueOf(0.08d));
+        when(delegate.PERatio("POP", BigDecimal.valueOf(800))).thenReturn(BigDecimal.valueOf(100));
+        when(delegate.volumeWeightedStockPriceAfter("ALE", 1000L)).thenReturn(BigDecimal.valueOf(1727.27273d));
+    }
+
+    @Test
+    public void thatRepeatedRequestsAreComputedOnce() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(stockService.dividendYield("POP", BigDecimal.valueOf(100)), equalTo(BigDecimal.valueOf(0.08d)));
+        }
+
+        verify(delegate, times(1)).dividendYield("POP", BigDecimal.valueOf(100));
+        assertThat(stockService.getHitCount(), equalTo(4L));
+        assertThat(stockService.getMissCount(), equalTo(1L));
+    }
+
+    @Test
+    public void thatQueriesBySymbolIdShareTheCachedResultsOfTheirSymbol() {
+        when(delegate.stockSymbol(1)).thenReturn("POP");
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+
+        assertThat(stockService.dividendYield(1, BigDecimal.valueOf(100)), equalTo(BigDecimal.valueOf(0.08d)));
+        stockService.addTrade(new Trade("POP", 2000L, 10, Trade.Type.BUY, BigDecimal.TEN));
+        when(delegate.dividendYield(1, BigDecimal.valueOf(100))).thenReturn(BigDecimal.valueOf(0.08d));
+        assertThat(stockService.dividendYield(1, BigDecimal.valueOf(100)), equalTo(BigDecimal.valueOf(0.08d)));
+
+        verify(delegate, times(1)).dividendYield("POP", BigDecimal.valueOf(100));
+        verify(delegate, times(1)).dividendYield(1, BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void thatAddingATradeInvalidatesCachedResultsOfThatStockOnly() {
+        stockService.volumeWeightedStockPriceAfter("ALE", 1000L);
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+
+        stockService.addTrade(new Trade("ALE", 2000L, 10, Trade.Type.BUY, BigDecimal.TEN));
+        stockService.volumeWeightedStockPriceAfter("ALE", 1000L);
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+
+        verify(delegate, times(2)).volumeWeightedStockPriceAfter("ALE", 1000L);
+        verify(delegate, times(1)).dividendYield("POP", BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void thatRegisteringAStockInvalidatesCachedResultsOfThatStock() {
+        stockService.PERatio("POP", BigDecimal.valueOf(800));
+
+        stockService.register(new Stock("POP", Stock.Type.COMMON, BigDecimal.valueOf(8), null, BigDecimal.valueOf(100)));
+        stockService.PERatio("POP", BigDecimal.valueOf(800));
+
+        verify(delegate, times(2)).PERatio("POP", BigDecimal.valueOf(800));
+    }
+
+    @Test
+    public void thatLeastRecentlyUsedEntryIsEvictedWhenCacheIsFull() {
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+        stockService.PERatio("POP", BigDecimal.valueOf(800));
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+        stockService.volumeWeightedStockPriceAfter("ALE", 1000L);
+        stockService.dividendYield("POP", BigDecimal.valueOf(100));
+        stockService.PERatio("POP", BigDecimal.valueOf(800));
+
+        assertThat(stockService.size(), equalTo(2));
+        assertThat(stockService.getEvictionCount(), equalTo(2L));
+        verify(delegate, times(1)).dividendYield("POP", BigDecimal.valueOf(100));
+        verify(delegate, times(2)).PERatio("POP", BigDecimal.valueOf(800));
+    }
+
+    @Test
+    public void thatSegmentedCacheStaysWithinItsMaximumSize() {
+        stockService = new CachingStockService(delegate, 1000);
+        when(delegate.dividendYield(eq("POP"), any(BigDecimal.class))).thenReturn(BigDecimal.valueOf(0.08d));
+        for (int i = 0; i < 1500; i++) {
+            stockService.dividendYield("POP", BigDecimal.valueOf(i));
+        }
+
+        assertThat(stockService.size(), lessThanOrEqualTo(1000));
+        assertThat(stockService.size() + stockService.getEvictionCount(), equalTo(1500L));
+    }
+
+    @Test
+    public void thatFailedComputationsAreNotCached() {
+        when(delegate.dividendYield("FAKE", BigDecimal.ONE)).thenThrow(new StockDoesNotExistException("No stock found for symbol: FAKE"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                stockService.dividendYield("FAKE", BigDecimal.ONE);
+                fail();
+            } catch (StockDoesNotExistException e) {
+                assertThat(e.getMessage(), equalTo("No stock found for symbol: FAKE"));
+            }
+        }
+
+        verify(delegate, times(2)).dividendYield("FAKE", BigDecimal.ONE);
+        assertThat(stockService.size(), equalTo(0));
+    }
+}
@@ -0,0 +1,111 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Differential tests: the fixed point engine must return exactly what the BigDecimal engine returns,
+ * including the scale of the result and the exceptions thrown.
+ */
+public class FixedPointNumericEngineTestCase {
+
+    private static final int PRECISION_DIGITS = StockServiceImpl.PRECISION_DIGITS;
+    private static final int RANDOM_CASES = 200_000;
+
+    private final NumericEngine expectedEngine = new BigDecimalNumericEngine(PRECISION_DIGITS);
+    private final NumericEngine fixedPointEngine = new FixedPointNumericEngine(PRECISION_DIGITS);
+    private final Random random = new Random(20180225);
+
+    @Test
+    public void thatDivisionMatchesBigDecimalForRandomOperands() {
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            BigDecimal dividend = randomDecimal();
+            BigDecimal divisor = randomDecimal();
+            assertSameOutcome(() -> expectedEngine.divide(dividend, divisor),
+                    () -> fixedPointEngine.divide(dividend, divisor));
+        }
+    }
+
+    @Test
+    public void thatDivisionByLongMatchesBigDecimalForRandomOperands() {
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            BigDecimal dividend = randomDecimal();
+            long divisor = random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(1_000_000) - 1000;
+            assertSameOutcome(() -> expectedEngine.divide(dividend, divisor),
+                    () -> fixedPointEngine.divide(dividend, divisor));
+        }
+    }
+
+    @Test
+    public void thatMultiplyAndDivideMatchesBigDecimalForRandomOperands() {
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            BigDecimal multiplicand = randomDecimal();
+            BigDecimal multiplier = randomDecimal();
+            BigDecimal divisor = randomDecimal();
+            assertSameOutcome(() -> expectedEngine.multiplyAndDivide(multiplicand, multiplier, divisor),
+                    () -> fixedPointEngine.multiplyAndDivide(multiplicand, multiplier, divisor));
+        }
+    }
+
+    @Test
+    public void thatEdgeCasesMatchBigDecimal() {
+        BigDecimal[] operands = {
+                BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE.negate(), BigDecimal.TEN, new BigDecimal("0.00000"),
+                new BigDecimal("1E+10"), new BigDecimal("1E-20"), new BigDecimal("3"), new BigDecimal("7.00001"),
+                BigDecimal.valueOf(Long.MAX_VALUE), BigDecimal.valueOf(Long.MIN_VALUE), BigDecimal.valueOf(1L << 62),
+                BigDecimal.valueOf((1L << 62) - 1), BigDecimal.valueOf(-(1L << 62) + 1, 3),
+                new BigDecimal(BigInteger.ONE.shiftLeft(100), 7), BigDecimal.valueOf(1727.27273d)
+        };
+        for (BigDecimal first : operands) {
+            for (BigDecimal second : operands) {
+                assertSameOutcome(() -> expectedEngine.divide(first, second),
+                        () -> fixedPointEngine.divide(first, second));
+                assertSameOutcome(() -> expectedEngine.divide(first, second.longValue()),
+                        () -> fixedPointEngine.divide(first, second.longValue()));
+                for (BigDecimal third : operands) {
+                    assertSameOutcome(() -> expectedEngine.multiplyAndDivide(first, second, third),
+                            () -> fixedPointEngine.multiplyAndDivide(first, second, third));
+                }
+            }
+        }
+    }
+
+    private BigDecimal randomDecimal() {
+        long unscaled;
+        switch (random.nextInt(4)) {
+            case 0:
+                unscaled = random.nextLong();
+                break;
+            case 1:
+                unscaled = random.nextInt();
+                break;
+            case 2:
+                unscaled = random.nextInt(100);
+                break;
+            default:
+                unscaled = random.nextInt(10_000_000);
+        }
+        return BigDecimal.valueOf(unscaled, random.nextInt(16) - 4);
+    }
+
+    private static void assertSameOutcome(Callable<BigDecimal> expected, Callable<BigDecimal> actual) {
+        Object expectedOutcome = outcome(expected);
+        Object actualOutcome = outcome(actual);
+        assertThat(actualOutcome, equalTo(expectedOutcome));
+    }
+
+    private static Object outcome(Callable<BigDecimal> computation) {
+        try {
+            return computation.call();
+        } catch (Exception e) {
+            return e.getClass() + ": " + e.getMessage();
+        }
+    }
+}
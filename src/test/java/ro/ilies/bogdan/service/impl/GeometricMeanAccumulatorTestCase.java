@@ -0,0 +1,46 @@
+package ro.ilies.bogdan.service.impl;
+
+import ch.obermuhlner.math.big.BigDecimalMath;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class GeometricMeanAccumulatorTestCase {
+
+    private static final MathContext EXACT_CONTEXT = new MathContext(25);
+
+    private final GeometricMeanAccumulator accumulator = new GeometricMeanAccumulator();
+
+    @Test
+    public void thatRelativeErrorOfTheMeanIsBelowOneInATrillion() {
+        Random random = new Random(20180225);
+        BigDecimal logSum = BigDecimal.ZERO;
+        for (int count = 1; count <= 20_000; count++) {
+            BigDecimal value = BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2);
+            accumulator.add(value);
+            logSum = logSum.add(BigDecimalMath.log(value, EXACT_CONTEXT));
+            if (count % 2000 == 0) {
+                BigDecimal exactMean = BigDecimalMath.exp(logSum.divide(BigDecimal.valueOf(count), EXACT_CONTEXT),
+                        EXACT_CONTEXT);
+                BigDecimal relativeError = accumulator.geometricMean().subtract(exactMean)
+                        .divide(exactMean, EXACT_CONTEXT).abs();
+                assertThat(relativeError, lessThan(new BigDecimal("1E-12")));
+            }
+        }
+    }
+
+    @Test
+    public void thatMeanOfEqualValuesIsTheValue() {
+        for (int i = 0; i < 1000; i++) {
+            accumulator.add(BigDecimal.valueOf(108.44718d));
+        }
+
+        assertThat(accumulator.geometricMean().compareTo(BigDecimal.valueOf(108.44718d)), equalTo(0));
+    }
+}
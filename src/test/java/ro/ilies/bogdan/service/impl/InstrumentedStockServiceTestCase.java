@@ -0,0 +1,93 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.exception.NoTradeFoundException;
+import ro.ilies.bogdan.service.exception.StockDoesNotExistException;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static ro.ilies.bogdan.service.impl.InstrumentedStockService.Operation;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InstrumentedStockServiceTestCase {
+
+    @Mock
+    private StockService delegate;
+
+    private InstrumentedStockService stockService;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        stockService = new InstrumentedStockService(delegate, 1);
+        when(delegate.PERatio("POP", BigDecimal.valueOf(800))).thenReturn(BigDecimal.valueOf(100));
+        when(delegate.PERatio(1, BigDecimal.valueOf(800))).thenReturn(BigDecimal.valueOf(100));
+        when(delegate.PERatio("NONE", BigDecimal.valueOf(800))).thenThrow(new StockDoesNotExistException("No stock found for symbol: NONE"));
+        when(delegate.volumeWeightedStockPriceAfter("ALE", 1000L)).thenThrow(new NoTradeFoundException("No trade has been made after given timestamp."));
+    }
+
+    @Test
+    public void thatCallsAndLatenciesAreRecordedPerOperation() {
+        assertThat(stockService.PERatio("POP", BigDecimal.valueOf(800)), equalTo(BigDecimal.valueOf(100)));
+        assertThat(stockService.PERatio(1, BigDecimal.valueOf(800)), equalTo(BigDecimal.valueOf(100)));
+
+        OperationMetrics peRatio = stockService.getMetrics(Operation.PE_RATIO);
+        assertThat(peRatio.getCallCount(), equalTo(2L));
+        assertThat(peRatio.getErrorCount(), equalTo(0L));
+        assertThat(peRatio.getLatency().getCount(), equalTo(2L));
+        assertThat(stockService.getMetrics(Operation.DIVIDEND_YIELD).getCallCount(), equalTo(0L));
+    }
+
+    @Test
+    public void thatErrorsAreCountedByExceptionTypeAndRethrown() {
+        try {
+            stockService.PERatio("NONE", BigDecimal.valueOf(800));
+            fail("Exception of the delegate should be rethrown.");
+        } catch (StockDoesNotExistException expected) {
+            // counted below
+        }
+        try {
+            stockService.volumeWeightedStockPriceAfter("ALE", 1000L);
+            fail("Exception of the delegate should be rethrown.");
+        } catch (NoTradeFoundException expected) {
+            // counted below
+        }
+
+        assertThat(stockService.getMetrics(Operation.PE_RATIO).getErrorCount(StockDoesNotExistException.class), equalTo(1L));
+        assertThat(stockService.getMetrics(Operation.PE_RATIO).getCallCount(), equalTo(1L));
+        assertThat(stockService.getMetrics(Operation.VOLUME_WEIGHTED_PRICE).getErrorCounts().get(NoTradeFoundException.class),
+                equalTo(1L));
+    }
+
+    @Test
+    public void thatEveryCallIsCountedButOnlySampledCallsAreTimed() {
+        InstrumentedStockService sampledStockService = new InstrumentedStockService(delegate, 4);
+        for (int i = 0; i < 4000; i++) {
+            sampledStockService.PERatio("POP", BigDecimal.valueOf(800));
+        }
+
+        OperationMetrics peRatio = sampledStockService.getMetrics(Operation.PE_RATIO);
+        assertThat(peRatio.getCallCount(), equalTo(4000L));
+        assertThat(peRatio.getLatency().getCount(), equalTo(1000L));
+    }
+
+    @Test
+    public void thatSamplingIntervalMustBePositive() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Sampling interval must be greater than 0.");
+        new InstrumentedStockService(delegate, 0);
+    }
+}
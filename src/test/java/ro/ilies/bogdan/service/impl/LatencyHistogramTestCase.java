@@ -0,0 +1,47 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTestCase {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void thatEveryValueFallsInABucketThatHoldsIt() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueOf(index), greaterThanOrEqualTo(value));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueOf(index - 1), lessThan(value));
+            }
+        }
+        assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)), equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void thatPercentilesAreWithinTheBucketPrecision() {
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertThat(histogram.getCount(), equalTo(100_000L));
+        assertThat(histogram.getMax(), equalTo(100_000_000L));
+        assertThat(histogram.getMean(), closeTo(50_000_500d, 1d));
+        assertThat((double) histogram.getValueAtPercentile(50), closeTo(50_000_000d, 50_000_000d / LatencyHistogram.SUB_BUCKETS));
+        assertThat((double) histogram.getValueAtPercentile(99.9), closeTo(99_900_000d, 99_900_000d / LatencyHistogram.SUB_BUCKETS));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(100_000_000L));
+    }
+
+    @Test
+    public void thatEmptyHistogramHasNoValues() {
+        assertThat(histogram.getValueAtPercentile(99), equalTo(0L));
+        assertThat(histogram.getMean(), equalTo(0d));
+    }
+}
@@ -0,0 +1,87 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.exception.NoTradeFoundException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static ro.ilies.bogdan.service.impl.StockServiceImpl.PRECISION_DIGITS;
+
+public class SlidingWindowVolumeWeightedPriceTestCase {
+
+    private static final long WINDOW_MILLIS = 15 * 60 * 1000;
+
+    private final AtomicLong now = new AtomicLong(100 * WINDOW_MILLIS);
+    private final SlidingWindowVolumeWeightedPrice window = new SlidingWindowVolumeWeightedPrice("ALE", WINDOW_MILLIS,
+            new BigDecimalNumericEngine(PRECISION_DIGITS), now::get, () -> { });
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void thatWindowHoldsTheTradesOfTheLastWindowMillis() {
+        window.seed(Collections.emptyIterator());
+        window.onTrade(trade(now.get() - 16 * 60 * 1000, 20, 2000));
+        window.onTrade(trade(now.get() - 14 * 60 * 1000, 10, 2000));
+        window.onTrade(trade(now.get() - 10 * 60 * 1000, 25, 1000));
+        window.onTrade(trade(now.get() - 5 * 60 * 1000, 20, 2500));
+
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(1727.27273d).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatTradesLeaveTheWindowAsTimePasses() {
+        window.seed(Collections.emptyIterator());
+        window.onTrade(trade(now.get() - 14 * 60 * 1000, 10, 2000));
+        window.onTrade(trade(now.get() - 5 * 60 * 1000, 20, 2500));
+
+        now.addAndGet(2 * 60 * 1000);
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(2500).setScale(PRECISION_DIGITS)));
+
+        now.addAndGet(WINDOW_MILLIS);
+        expectedException.expect(NoTradeFoundException.class);
+        expectedException.expectMessage("No trade has been made in the window.");
+        window.current();
+    }
+
+    @Test
+    public void thatTradesRecordedWhileSeedingAreAddedAfterTheStoredOnes() {
+        Trade storedTrade = trade(now.get() - 60 * 1000, 10, 1000);
+        window.onTrade(trade(now.get() - 1000, 10, 2000));
+        window.onTrade(trade(now.get(), 10, 3000));
+
+        window.seed(Collections.singletonList(storedTrade).iterator());
+
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(2000).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatEqualTradesStoredAndRecordedAreBothCounted() {
+        window.onTrade(trade(now.get() - 1000, 10, 2000));
+
+        window.seed(Arrays.asList(trade(now.get() - 1000, 10, 2000), trade(now.get() - 1000, 20, 500)).iterator());
+
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(1250).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatTradesOfOtherStocksAreIgnored() {
+        window.seed(Collections.emptyIterator());
+        window.onTrade(trade(now.get() - 1000, 10, 2000));
+        window.onTrade(new Trade("POP", now.get() - 1000, 10, Trade.Type.BUY, BigDecimal.valueOf(100)));
+
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(2000).setScale(PRECISION_DIGITS)));
+    }
+
+    private static Trade trade(long timestamp, int quantity, long price) {
+        return new Trade("ALE", timestamp, quantity, Trade.Type.BUY, BigDecimal.valueOf(price));
+    }
+}
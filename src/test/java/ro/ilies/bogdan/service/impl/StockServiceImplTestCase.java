@@ -1,5 +1,6 @@
 package ro.ilies.bogdan.service.impl;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -9,20 +10,55 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
+import ro.ilies.bogdan.model.BulkQueryResult;
+import ro.ilies.bogdan.model.PriceRange;
 import ro.ilies.bogdan.model.Stock;
 import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.model.TradeBatchReport;
+import ro.ilies.bogdan.model.TradeRejection;
+import ro.ilies.bogdan.repository.exception.RepositoryException;
 import ro.ilies.bogdan.repository.stock.StockEntityManager;
 import ro.ilies.bogdan.repository.stock.impl.InMemoryStockEntityManager;
+import ro.ilies.bogdan.repository.symbol.SymbolDictionary;
 import ro.ilies.bogdan.repository.trade.impl.InMemoryTradeEntityManager;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.Subscription;
+import ro.ilies.bogdan.service.VolumeWeightedPriceWindow;
 import ro.ilies.bogdan.service.exception.DuplicateStockException;
 import ro.ilies.bogdan.service.exception.NoStockFoundException;
 import ro.ilies.bogdan.service.exception.NoTradeFoundException;
 import ro.ilies.bogdan.service.exception.StockDoesNotExistException;
+import ro.ilies.bogdan.service.exception.TradeListenerException;
 
 import java.math.BigDecimal;
-
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -50,6 +86,11 @@ public class StockServiceImplTestCase {
         stockService = new StockServiceImpl(getInitializedStockEntityManager(), getInitializedTradeEntityManager());
     }
 
+    @After
+    public void tearDown() {
+        stockService.close();
+    }
+
     private InMemoryTradeEntityManager getInitializedTradeEntityManager() {
         tradeEntityManager = Mockito.spy(new InMemoryTradeEntityManager());
         return tradeEntityManager;
@@ -219,6 +260,114 @@ public class StockServiceImplTestCase {
         stockService.addTrade(trade);
     }
 
+    @Test
+    public void thatBatchOfTradesIsStoredWithOneBulkOperationPerStock() {
+        long startTimestamp = System.currentTimeMillis();
+        Trade aleTrade = new Trade("ALE", startTimestamp - 2*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade popTrade = new Trade("POP", startTimestamp - 2*60*1000, 10, Trade.Type.SELL, BigDecimal.valueOf(100));
+        Trade aleTrade1 = new Trade("ALE", startTimestamp - 1*60*1000, 30, Trade.Type.SELL, BigDecimal.valueOf(1000));
+
+        TradeBatchReport report = stockService.addTrades(Arrays.asList(aleTrade, popTrade, aleTrade1));
+
+        assertThat(report.getAcceptedCount(), equalTo(3));
+        assertThat(report.isFullyAccepted(), equalTo(true));
+        verify(tradeEntityManager).storeAll(Arrays.asList(aleTrade, aleTrade1));
+        verify(tradeEntityManager).storeAll(Collections.singletonList(popTrade));
+        verify(tradeEntityManager, never()).store(any(Trade.class));
+        assertThat(tradeEntityManager.retrieveAfter("ALE", startTimestamp - 15*60*1000), contains(aleTrade, aleTrade1));
+    }
+
+    @Test
+    public void thatInvalidTradesOfABatchAreReportedWithoutRejectingTheOthers() {
+        long startTimestamp = System.currentTimeMillis();
+        Trade validTrade = new Trade("ALE", startTimestamp - 60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade[] trades = {
+                new Trade("FAKE", startTimestamp - 60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000)),
+                validTrade,
+                new Trade("ALE", startTimestamp - 60*1000, 0, Trade.Type.BUY, BigDecimal.valueOf(2000)),
+                null,
+                new Trade("ALE", startTimestamp + 2*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(100))
+        };
+
+        TradeBatchReport report = stockService.addTrades(trades);
+
+        assertThat(report.getAcceptedCount(), equalTo(1));
+        assertThat(report.getRejections().stream().map(TradeRejection::getIndex).collect(Collectors.toList()),
+                contains(0, 2, 3, 4));
+        assertThat(report.getRejections().stream().map(TradeRejection::getReason).collect(Collectors.toList()),
+                contains("No stock found for symbol: FAKE",
+                        "Shares quantity for trade cannot be less than or equal to 0.",
+                        "Trade cannot be null.",
+                        "Timestamp for trade cannot be in the future."));
+        assertThat(tradeEntityManager.retrieveAfter("ALE", startTimestamp - 15*60*1000), contains(validTrade));
+    }
+
+    @Test
+    public void thatTradesOfASymbolTheRepositoryRefusesAreRejectedWithoutAbortingTheBatch() {
+        long startTimestamp = System.currentTimeMillis();
+        List<Trade> notifiedTrades = new ArrayList<>();
+        stockService.addTradeListener(notifiedTrades::add);
+        stockService.addTradeListener(trade -> {
+            throw new IllegalStateException("Listener failed.");
+        });
+        Trade aleTrade = new Trade("ALE", startTimestamp - 2*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade popTrade = new Trade("POP", startTimestamp - 2*60*1000, 10, Trade.Type.SELL, BigDecimal.valueOf(100));
+        Trade ginTrade = new Trade("GIN", startTimestamp - 1*60*1000, 30, Trade.Type.SELL, BigDecimal.valueOf(1000));
+        doThrow(new RepositoryException("Trades must be journaled in timestamp order."))
+                .when(tradeEntityManager).storeAll(Collections.singletonList(popTrade));
+
+        TradeBatchReport report = stockService.addTrades(new Trade[]{aleTrade, popTrade, ginTrade});
+
+        assertThat(report.getAcceptedCount(), equalTo(2));
+        assertThat(report.getRejections(), hasSize(1));
+        assertThat(report.getRejections().get(0).getIndex(), equalTo(1));
+        assertThat(report.getRejections().get(0).getReason(),
+                equalTo("Trade could not be stored: Trades must be journaled in timestamp order."));
+        assertThat(report.getListenerFailures(), hasSize(2));
+        assertThat(notifiedTrades, contains(aleTrade, ginTrade));
+        assertThat(tradeEntityManager.retrieveAfter("GIN", startTimestamp - 15*60*1000), contains(ginTrade));
+    }
+
+    @Test
+    public void thatAFailingListenerDoesNotKeepATradeFromTheOtherListeners() {
+        long startTimestamp = System.currentTimeMillis();
+        IllegalStateException listenerFailure = new IllegalStateException("Listener failed.");
+        stockService.addTradeListener(trade -> {
+            throw listenerFailure;
+        });
+        List<Trade> notifiedTrades = new ArrayList<>();
+        stockService.addTradeListener(notifiedTrades::add);
+        VolumeWeightedPriceWindow window = stockService.trackVolumeWeightedStockPrice("ALE", 15*60*1000);
+        Trade trade = new Trade("ALE", startTimestamp - 1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000));
+
+        try {
+            stockService.addTrade(trade);
+            fail("A failing listener must be reported.");
+        } catch (TradeListenerException e) {
+            assertThat(e.getCause(), equalTo(listenerFailure));
+        }
+
+        assertThat(notifiedTrades, contains(trade));
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(2000).setScale(PRECISION_DIGITS)));
+        assertThat(tradeEntityManager.retrieveAfter("ALE", startTimestamp - 15*60*1000), contains(trade));
+        window.close();
+    }
+
+    @Test
+    public void thatTradeListenersAreNotifiedOfRecordedTradesOnly() {
+        long startTimestamp = System.currentTimeMillis();
+        List<Trade> notifiedTrades = new ArrayList<>();
+        stockService.addTradeListener(notifiedTrades::add);
+        Trade trade = new Trade("ALE", startTimestamp - 1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade batchTrade = new Trade("POP", startTimestamp - 1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000));
+        Trade invalidTrade = new Trade("POP", startTimestamp - 1000, 0, Trade.Type.BUY, BigDecimal.valueOf(2000));
+
+        stockService.addTrade(trade);
+        stockService.addTrades(new Trade[]{batchTrade, invalidTrade});
+
+        assertThat(notifiedTrades, contains(trade, batchTrade));
+    }
+
     @Test
     public void thatVolumeWeightedStockPriceForPast15MinutesIsCorrectlyComputed() {
         long startTimestamp = System.currentTimeMillis();
@@ -236,6 +385,283 @@ public class StockServiceImplTestCase {
         assertThat(volumeWeightedStockPrice, equalTo(BigDecimal.valueOf(1727.27273d).setScale(PRECISION_DIGITS)));
     }
 
+    @Test
+    public void thatVolumeWeightedStockPriceVolumeAndImbalanceAreComputedBySide() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 20*60*1000, 50, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 10*60*1000, 30, Trade.Type.SELL, BigDecimal.valueOf(1500)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+        long after = startTimestamp - 15*60*1000;
+
+        assertThat(stockService.volumeWeightedStockPriceAfter("ALE", after, Trade.Type.BUY),
+                equalTo(BigDecimal.valueOf(2333.33334d).setScale(PRECISION_DIGITS)));
+        assertThat(stockService.volumeWeightedStockPriceAfter("ALE", after, Trade.Type.SELL),
+                equalTo(BigDecimal.valueOf(1500).setScale(PRECISION_DIGITS)));
+        assertThat(stockService.tradedVolumeAfter("ALE", after, Trade.Type.BUY), equalTo(30L));
+        assertThat(stockService.tradedVolumeAfter("ALE", after, Trade.Type.SELL), equalTo(30L));
+        assertThat(stockService.tradedVolumeAfter("POP", after, Trade.Type.SELL), equalTo(0L));
+        assertThat(stockService.orderImbalanceAfter("ALE", after), equalTo(BigDecimal.ZERO.setScale(PRECISION_DIGITS)));
+        assertThat(stockService.orderImbalanceAfter("ALE", startTimestamp - 30*60*1000),
+                equalTo(BigDecimal.valueOf(-0.45455d).setScale(PRECISION_DIGITS)));
+        assertThat(stockService.orderImbalanceAfter("ALE", startTimestamp - 6*60*1000),
+                equalTo(BigDecimal.ONE.setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatWhenNoTradeOfSideExistsThenVolumeWeightedStockPriceThrowsException() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+
+        expectedException.expect(NoTradeFoundException.class);
+        expectedException.expectMessage("No trade has been made after given timestamp.");
+        stockService.volumeWeightedStockPriceAfter("ALE", startTimestamp - 15*60*1000, Trade.Type.SELL);
+    }
+
+    @Test
+    public void thatVolumeWeightedStockPriceAndPriceRangeOfAPastIntervalAreComputed() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 20*60*1000, 50, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 10*60*1000, 20, Trade.Type.SELL, BigDecimal.valueOf(2500)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(3000)));
+
+        assertThat(stockService.volumeWeightedStockPriceBetween("ALE", startTimestamp - 15*60*1000, startTimestamp - 5*60*1000),
+                equalTo(BigDecimal.valueOf(2333.33334d).setScale(PRECISION_DIGITS)));
+        assertThat(stockService.priceRangeBetween("ALE", startTimestamp - 20*60*1000, startTimestamp - 10*60*1000),
+                equalTo(new PriceRange(BigDecimal.valueOf(1000), BigDecimal.valueOf(2000))));
+    }
+
+    @Test
+    public void thatWhenNoTradeWasMadeInIntervalThenPriceRangeThrowsException() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(3000)));
+
+        expectedException.expect(NoTradeFoundException.class);
+        expectedException.expectMessage("No trade has been made in given interval.");
+        stockService.priceRangeBetween("ALE", startTimestamp - 15*60*1000, startTimestamp - 5*60*1000);
+    }
+
+    @Test
+    public void thatWhenIntervalEndsBeforeItStartsThenVolumeWeightedStockPriceThrowsException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Interval start cannot be after its end.");
+        stockService.volumeWeightedStockPriceBetween("ALE", 1000, 999);
+    }
+
+    @Test
+    public void thatTrackedWindowIsSeededWithStoredTradesAndFollowsNewOnes() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 16*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 10*60*1000, 25, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+
+        VolumeWeightedPriceWindow window = stockService.trackVolumeWeightedStockPrice("ALE", 15*60*1000);
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(1727.27273d).setScale(PRECISION_DIGITS)));
+
+        window.close();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 1000, 100, Trade.Type.BUY, BigDecimal.valueOf(100)));
+        assertThat(window.current(), equalTo(BigDecimal.valueOf(1727.27273d).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatTradesRecordedWhileAWindowIsOpenedAreCountedOnce() throws InterruptedException {
+        StockService stockService = new StockServiceImpl(getInitializedStockEntityManager(), new InMemoryTradeEntityManager());
+        long startTimestamp = System.currentTimeMillis();
+        Random random = new Random(17);
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < 5_000; i++) {
+                stockService.addTrade(new Trade("ALE", startTimestamp - 60*1000 + random.nextInt(1000),
+                        1 + random.nextInt(100), Trade.Type.BUY, BigDecimal.valueOf(1 + random.nextInt(1000))));
+            }
+        });
+        recorder.start();
+        List<VolumeWeightedPriceWindow> windows = new ArrayList<>();
+        while (recorder.isAlive()) {
+            windows.add(stockService.trackVolumeWeightedStockPrice("ALE", 15*60*1000));
+            Thread.sleep(1);
+        }
+        recorder.join();
+
+        BigDecimal expected = stockService.volumeWeightedStockPriceAfter("ALE", startTimestamp - 15*60*1000);
+        for (VolumeWeightedPriceWindow window : windows) {
+            assertThat(window.current(), equalTo(expected));
+            window.close();
+        }
+    }
+
+    @Test
+    public void thatSubscribersArePushedPriceAndIndexChanges() throws InterruptedException {
+        ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor();
+        try {
+            StockService stockService = new StockServiceImpl(stockEntityManager, tradeEntityManager,
+                    new BigDecimalNumericEngine(PRECISION_DIGITS), new UpdatePublisher(dispatcher, 0));
+            BlockingQueue<BigDecimal> prices = new LinkedBlockingQueue<>();
+            BlockingQueue<BigDecimal> indexes = new LinkedBlockingQueue<>();
+            Subscription priceSubscription = stockService.subscribeVolumeWeightedStockPrice("ALE", 15*60*1000, prices::add);
+            stockService.subscribeGBCEAllShareIndex(indexes::add);
+            assertThat(indexes.poll(5, TimeUnit.SECONDS), equalTo(stockService.GBCEAllShareIndex()));
+
+            long startTimestamp = System.currentTimeMillis();
+            stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+            assertThat(prices.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(2000).setScale(PRECISION_DIGITS)));
+            stockService.addTrades(Collections.singletonList(
+                    new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500))));
+            assertThat(prices.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(2333.33334d).setScale(PRECISION_DIGITS)));
+            stockService.register(new Stock("RUM", Stock.Type.COMMON, BigDecimal.ONE, null, BigDecimal.valueOf(1000)));
+            assertThat(indexes.poll(5, TimeUnit.SECONDS), equalTo(stockService.GBCEAllShareIndex()));
+
+            priceSubscription.close();
+            stockService.addTrade(new Trade("ALE", startTimestamp - 1000, 10, Trade.Type.SELL, BigDecimal.valueOf(100)));
+            assertThat(prices.poll(100, TimeUnit.MILLISECONDS), nullValue());
+        } finally {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void thatFixedPointEngineGivesTheSameResults() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 10*60*1000, 25, Trade.Type.SELL, BigDecimal.valueOf(1000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+        StockServiceImpl fixedPointStockService = new StockServiceImpl(stockEntityManager, tradeEntityManager,
+                new FixedPointNumericEngine(PRECISION_DIGITS));
+
+        for (String stockSymbol : new String[]{"POP", "ALE", "GIN", "JOE"}) {
+            for (BigDecimal marketPrice : new BigDecimal[]{BigDecimal.valueOf(100), BigDecimal.valueOf(7.3d), BigDecimal.valueOf(800)}) {
+                assertThat(fixedPointStockService.dividendYield(stockSymbol, marketPrice),
+                        equalTo(stockService.dividendYield(stockSymbol, marketPrice)));
+                assertThat(fixedPointStockService.PERatio(stockSymbol, marketPrice),
+                        equalTo(stockService.PERatio(stockSymbol, marketPrice)));
+            }
+        }
+        assertThat(fixedPointStockService.volumeWeightedStockPriceAfter("ALE", startTimestamp - 15*60*1000),
+                equalTo(BigDecimal.valueOf(1727.27273d).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatQueriesBySymbolIdGiveTheSameResultsAsQueriesBySymbol() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+
+        for (String stockSymbol : new String[]{"POP", "ALE", "GIN", "JOE"}) {
+            int symbolId = stockService.symbolId(stockSymbol);
+            assertThat(stockService.stockSymbol(symbolId), equalTo(stockSymbol));
+            assertThat(stockService.dividendYield(symbolId, BigDecimal.valueOf(7.3d)),
+                    equalTo(stockService.dividendYield(stockSymbol, BigDecimal.valueOf(7.3d))));
+            assertThat(stockService.PERatio(symbolId, BigDecimal.valueOf(7.3d)),
+                    equalTo(stockService.PERatio(stockSymbol, BigDecimal.valueOf(7.3d))));
+        }
+        assertThat(stockService.volumeWeightedStockPriceAfter(stockService.symbolId("ALE"), startTimestamp - 15*60*1000),
+                equalTo(stockService.volumeWeightedStockPriceAfter("ALE", startTimestamp - 15*60*1000)));
+    }
+
+    @Test
+    public void thatBulkQueriesGiveTheSameResultsAsSingleQueriesAndReportFailuresPerPosition() {
+        String[] stockSymbols = {"POP", "FAKE", "GIN", "TEA", null};
+        BigDecimal[] marketPrices = {BigDecimal.valueOf(800), BigDecimal.valueOf(800), BigDecimal.ZERO,
+                BigDecimal.valueOf(800), BigDecimal.valueOf(800)};
+
+        BulkQueryResult dividendYields = stockService.dividendYields(stockSymbols, marketPrices);
+        BulkQueryResult peRatios = stockService.PERatios(stockSymbols, marketPrices);
+
+        assertThat(dividendYields.getValue(0), equalTo(stockService.dividendYield("POP", BigDecimal.valueOf(800))));
+        assertThat(dividendYields.getValue(3), equalTo(stockService.dividendYield("TEA", BigDecimal.valueOf(800))));
+        assertThat(peRatios.getValue(0), equalTo(stockService.PERatio("POP", BigDecimal.valueOf(800))));
+        assertThat(peRatios.getFailure(0), nullValue());
+        assertThat(peRatios.getFailure(1), instanceOf(StockDoesNotExistException.class));
+        assertThat(peRatios.getFailure(2), instanceOf(IllegalArgumentException.class));
+        assertThat(peRatios.getFailure(3), instanceOf(ArithmeticException.class));
+        assertThat(peRatios.getFailure(4), instanceOf(NullPointerException.class));
+        assertThat(peRatios.getFailureCount(), equalTo(4));
+        assertThat(dividendYields.getFailureCount(), equalTo(3));
+        assertThat(dividendYields.getStockSymbol(3), equalTo("TEA"));
+    }
+
+    @Test
+    public void thatBulkQueriesByMarketPriceMapAreKeyedBySymbol() {
+        Map<String, BigDecimal> marketPricesBySymbol = new LinkedHashMap<>();
+        marketPricesBySymbol.put("ALE", BigDecimal.valueOf(46));
+        marketPricesBySymbol.put("FAKE", BigDecimal.valueOf(46));
+        marketPricesBySymbol.put("GIN", BigDecimal.valueOf(200));
+
+        Map<String, BigDecimal> dividendYields = stockService.dividendYields(marketPricesBySymbol).getValuesBySymbol();
+
+        assertThat(dividendYields.keySet(), contains("ALE", "GIN"));
+        assertThat(dividendYields.get("ALE"), equalTo(BigDecimal.valueOf(0.5d).setScale(PRECISION_DIGITS)));
+        assertThat(dividendYields.get("GIN"), equalTo(BigDecimal.valueOf(1d).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatLargeBulkQueriesGiveTheSameResultsAsSingleQueries() {
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+        String[] knownSymbols = {"POP", "ALE", "GIN", "JOE", "TEA"};
+        String[] stockSymbols = new String[BulkQuery.PARALLEL_THRESHOLD * 4];
+        BigDecimal[] marketPrices = new BigDecimal[stockSymbols.length];
+        for (int i = 0; i < stockSymbols.length; i++) {
+            stockSymbols[i] = knownSymbols[i % knownSymbols.length];
+            marketPrices[i] = BigDecimal.valueOf(1 + i);
+        }
+
+        BulkQueryResult peRatios = stockService.PERatios(stockSymbols, marketPrices);
+        BulkQueryResult prices = stockService.volumeWeightedStockPricesAfter(stockSymbols, startTimestamp - 15*60*1000);
+
+        for (int i = 0; i < stockSymbols.length; i++) {
+            if ("TEA".equals(stockSymbols[i])) {
+                assertThat(peRatios.isSuccessful(i), equalTo(false));
+            } else {
+                assertThat(peRatios.getValue(i), equalTo(stockService.PERatio(stockSymbols[i], marketPrices[i])));
+            }
+            if ("ALE".equals(stockSymbols[i])) {
+                assertThat(prices.getValue(i), equalTo(BigDecimal.valueOf(2500).setScale(PRECISION_DIGITS)));
+            } else {
+                assertThat(prices.getFailure(i), instanceOf(NoTradeFoundException.class));
+            }
+        }
+    }
+
+    @Test
+    public void thatWhenSymbolsAndMarketPricesDifferInLengthThenBulkQueryThrowsException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Stock symbols and market prices must have the same length.");
+        stockService.PERatios(new String[]{"POP", "ALE"}, new BigDecimal[]{BigDecimal.TEN});
+    }
+
+    @Test
+    public void thatVolumeWeightedStockPriceBySymbolIdIsQueriedByIdWhenRepositoriesShareTheSymbolIds() {
+        SymbolDictionary symbolDictionary = new SymbolDictionary();
+        InMemoryTradeEntityManager tradeEntityManager = Mockito.spy(new InMemoryTradeEntityManager(symbolDictionary));
+        StockService stockService = new StockServiceImpl(new InMemoryStockEntityManager(symbolDictionary), tradeEntityManager);
+        stockService.register(new Stock("ALE", Stock.Type.COMMON, BigDecimal.valueOf(23), null, BigDecimal.valueOf(60)));
+        long startTimestamp = System.currentTimeMillis();
+        stockService.addTrade(new Trade("ALE", startTimestamp - 14*60*1000, 10, Trade.Type.BUY, BigDecimal.valueOf(2000)));
+        stockService.addTrade(new Trade("ALE", startTimestamp - 5*60*1000, 20, Trade.Type.BUY, BigDecimal.valueOf(2500)));
+        int symbolId = stockService.symbolId("ALE");
+
+        assertThat(stockService.volumeWeightedStockPriceAfter(symbolId, startTimestamp - 15*60*1000),
+                equalTo(BigDecimal.valueOf(2333.33334d).setScale(PRECISION_DIGITS)));
+        verify(tradeEntityManager).aggregateAfter(symbolId, startTimestamp - 15*60*1000);
+        verify(tradeEntityManager, never()).aggregateAfter(anyString(), anyLong());
+    }
+
+    @Test
+    public void thatWhenUnknownSymbolIdProvidedThenDividendYieldThrowsException() {
+        expectedException.expect(StockDoesNotExistException.class);
+        expectedException.expectMessage("No stock found for symbol id: 42");
+        stockService.dividendYield(42, BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void thatWhenInvalidStockSymbolProvidedThenSymbolIdThrowsException() {
+        expectedException.expect(StockDoesNotExistException.class);
+        expectedException.expectMessage("No stock found for symbol: invalid_symbol");
+        stockService.symbolId("invalid_symbol");
+    }
+
     @Test
     public void thatWhenInvalidStockSymbolProvidedThenVolumeWeightedStockPriceThrowsException() {
         long startTimestamp = System.currentTimeMillis();
@@ -273,6 +699,62 @@ public class StockServiceImplTestCase {
         assertThat(GBCEAllShareIndex, equalTo(BigDecimal.valueOf(108.44718d).setScale(PRECISION_DIGITS)));
     }
 
+    @Test
+    public void thatExactGBCEAllShareIndexIsCorrectlyComputed() {
+        BigDecimal GBCEAllShareIndex = stockService.exactGBCEAllShareIndex();
+        assertThat(GBCEAllShareIndex, equalTo(BigDecimal.valueOf(108.44718d).setScale(PRECISION_DIGITS)));
+    }
+
+    @Test
+    public void thatGBCEAllShareIndexFromLogarithmsIsCorrectlyComputed() {
+        assertThat(stockService.GBCEAllShareIndex(MathContext.DECIMAL64), equalTo(new BigDecimal("108.4471771197699")));
+        assertThat(stockService.GBCEAllShareIndex(new MathContext(3)), equalTo(new BigDecimal("108")));
+    }
+
+    @Test
+    public void thatGBCEAllShareIndexesAgreeForALargeRegistry() {
+        stockService = new StockServiceImpl(new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
+        Random random = new Random(7);
+        for (int i = 0; i < BalancedProduct.PARALLEL_THRESHOLD * 3; i++) {
+            stockService.register(new Stock("STOCK" + i, Stock.Type.COMMON, BigDecimal.ONE, null,
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), 2)));
+        }
+
+        BigDecimal exactIndex = stockService.exactGBCEAllShareIndex();
+        assertThat(stockService.GBCEAllShareIndex(MathContext.DECIMAL64).setScale(PRECISION_DIGITS, BigDecimal.ROUND_UP),
+                equalTo(exactIndex));
+        assertThat(stockService.GBCEAllShareIndex(), equalTo(exactIndex));
+    }
+
+    @Test
+    public void thatGBCEAllShareIndexIsUpdatedWhenStockIsRegistered() {
+        stockService.register(new Stock("NEW_SYMBOL", Stock.Type.COMMON,
+                BigDecimal.valueOf(8), null, BigDecimal.valueOf(1000)));
+
+        assertThat(stockService.GBCEAllShareIndex(), equalTo(stockService.exactGBCEAllShareIndex()));
+        assertThat(stockService.GBCEAllShareIndex(), equalTo(new BigDecimal("157.04179")));
+    }
+
+    @Test
+    public void thatGBCEAllShareIndexOfEqualParValuesIsNotRoundedUpPastTheParValue() {
+        stockService = new StockServiceImpl(new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
+        for (int i = 0; i < 7; i++) {
+            stockService.register(new Stock("STOCK" + i, Stock.Type.COMMON,
+                    BigDecimal.ONE, null, BigDecimal.valueOf(0.3d)));
+        }
+        assertThat(stockService.GBCEAllShareIndex(), equalTo(BigDecimal.valueOf(0.3d).setScale(PRECISION_DIGITS)));
+        assertThat(stockService.GBCEAllShareIndex(MathContext.DECIMAL64), comparesEqualTo(BigDecimal.valueOf(0.3d)));
+    }
+
+    @Test
+    public void thatWhenParValueIsZeroThenGBCEAllShareIndexIsZero() {
+        stockService.register(new Stock("NEW_SYMBOL", Stock.Type.COMMON,
+                BigDecimal.valueOf(8), null, BigDecimal.ZERO));
+
+        assertThat(stockService.GBCEAllShareIndex(), equalTo(BigDecimal.ZERO.setScale(PRECISION_DIGITS)));
+        assertThat(stockService.GBCEAllShareIndex(MathContext.DECIMAL64), comparesEqualTo(BigDecimal.ZERO));
+    }
+
     @Test
     public void thatWhenNoStockAvailableThenGBCEAllShareIndexThrowsException() {
         stockService = new StockServiceImpl(new InMemoryStockEntityManager(), new InMemoryTradeEntityManager());
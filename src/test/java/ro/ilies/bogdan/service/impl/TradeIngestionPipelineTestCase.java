@@ -0,0 +1,134 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import ro.ilies.bogdan.model.Stock;
+import ro.ilies.bogdan.model.Trade;
+import ro.ilies.bogdan.service.StockService;
+import ro.ilies.bogdan.service.StockServiceFactory;
+import ro.ilies.bogdan.service.exception.StockDoesNotExistException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TradeIngestionPipelineTestCase {
+
+    private TradeIngestionPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void thatSubmittedTradesAreAddedInSubmissionOrderPerSymbol() throws Exception {
+        StockService stockService = StockServiceFactory.getStockService();
+        String[] stockSymbols = {"TEA", "POP", "ALE", "GIN", "JOE"};
+        for (String stockSymbol : stockSymbols) {
+            stockService.register(new Stock(stockSymbol, Stock.Type.COMMON, BigDecimal.TEN, null, BigDecimal.valueOf(100)));
+        }
+        Map<String, List<Integer>> addedQuantities = new ConcurrentHashMap<>();
+        stockService.addTradeListener(trade -> addedQuantities
+                .computeIfAbsent(trade.getStockSymbol(), symbol -> new CopyOnWriteArrayList<>()).add(trade.getSharesQuantity()));
+        pipeline = new TradeIngestionPipeline(stockService, 3);
+        long timestamp = System.currentTimeMillis() - 1000;
+
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            acks.add(pipeline.submitTrade(new Trade(stockSymbols[i % stockSymbols.length], timestamp, i,
+                    Trade.Type.BUY, BigDecimal.TEN)));
+        }
+        CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+
+        for (String stockSymbol : stockSymbols) {
+            List<Integer> quantities = addedQuantities.get(stockSymbol);
+            assertThat(quantities, hasSize(1000));
+            for (int i = 1; i < quantities.size(); i++) {
+                assertThat(quantities.get(i), greaterThan(quantities.get(i - 1)));
+            }
+        }
+        assertThat(pipeline.getCompletedCount(), equalTo(5000L));
+        assertThat(pipeline.getQueueDepth(), equalTo(0));
+        assertThat(pipeline.getMaxInsertLatencyNanos(), greaterThanOrEqualTo(pipeline.getMeanInsertLatencyNanos()));
+    }
+
+    @Test
+    public void thatFailureToAddATradeCompletesItsFutureExceptionally() throws Exception {
+        pipeline = new TradeIngestionPipeline(StockServiceFactory.getStockService(), 1);
+
+        CompletableFuture<Void> ack = pipeline.submitTrade(
+                new Trade("NONE", System.currentTimeMillis(), 10, Trade.Type.BUY, BigDecimal.TEN));
+
+        try {
+            ack.get(1, TimeUnit.MINUTES);
+            fail("Trade for a missing stock should not be added.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(StockDoesNotExistException.class));
+        }
+        assertThat(pipeline.getFailedCount(), equalTo(1L));
+    }
+
+    @Test
+    public void thatFullShardRejectsTradesWithoutBlocking() throws Exception {
+        StockService stockService = mock(StockService.class);
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            release.await();
+            return null;
+        }).when(stockService).addTrade(any(Trade.class));
+        pipeline = new TradeIngestionPipeline(stockService, 1, 4);
+        Trade trade = new Trade("TEA", System.currentTimeMillis(), 10, Trade.Type.BUY, BigDecimal.TEN);
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        acks.add(pipeline.submitTrade(trade));
+        writerBlocked.await(1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 4; i++) {
+            acks.add(pipeline.submitTrade(trade));
+        }
+        CompletableFuture<Void> rejectedAck = pipeline.submitTrade(trade);
+
+        assertThat(pipeline.getQueueDepth(), equalTo(4));
+        assertThat(rejectedAck.isCompletedExceptionally(), equalTo(true));
+        assertThat(pipeline.getRejectedCount(), equalTo(1L));
+        release.countDown();
+        CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+        assertThat(pipeline.getCompletedCount(), equalTo(5L));
+    }
+
+    @Test
+    public void thatClosingAddsQueuedTradesAndRejectsNewOnes() throws Exception {
+        StockService stockService = mock(StockService.class);
+        pipeline = new TradeIngestionPipeline(stockService, 2);
+        Trade trade = new Trade("TEA", System.currentTimeMillis(), 10, Trade.Type.BUY, BigDecimal.TEN);
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            acks.add(pipeline.submitTrade(trade));
+        }
+
+        pipeline.close();
+
+        for (CompletableFuture<Void> ack : acks) {
+            assertThat(ack.isDone() && !ack.isCompletedExceptionally(), equalTo(true));
+        }
+        try {
+            pipeline.submitTrade(trade).get();
+            fail("Closed pipeline should reject trades.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ro.ilies.bogdan.service.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import ro.ilies.bogdan.service.Subscription;
+
+import java.math.BigDecimal;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class UpdatePublisherTestCase {
+
+    private static final String TOPIC = "ALE";
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong value = new AtomicLong(1);
+    private final BlockingQueue<BigDecimal> updates = new LinkedBlockingQueue<>();
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    public void thatSubscriberGetsTheCurrentValueAndThenOnlyChangedOnes() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 0);
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), updates::add);
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        publisher.publish(TOPIC);
+        publisher.publish("POP");
+        value.set(2);
+        publisher.publish(TOPIC);
+
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(2)));
+        assertThat(updates.poll(100, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    public void thatBurstsOfChangesAreCoalescedUnderTheMinimumInterval() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 200);
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), updates::add);
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        for (int i = 2; i <= 1000; i++) {
+            value.set(i);
+            publisher.publish(TOPIC);
+        }
+
+        int deliveries = 0;
+        BigDecimal last;
+        do {
+            last = updates.poll(5, TimeUnit.SECONDS);
+            deliveries++;
+        } while (last != null && last.intValue() != 1000);
+        assertThat(last, equalTo(BigDecimal.valueOf(1000)));
+        assertThat(deliveries, lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void thatSlowListenersDoNotBlockPublishing() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), update -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updates.add(update);
+        });
+
+        long start = System.nanoTime();
+        for (int i = 2; i <= 1000; i++) {
+            value.set(i);
+            publisher.publish(TOPIC);
+        }
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(1)));
+        release.countDown();
+
+        BigDecimal last;
+        do {
+            last = updates.poll(5, TimeUnit.SECONDS);
+        } while (last != null && last.intValue() != 1000);
+        assertThat(last, equalTo(BigDecimal.valueOf(1000)));
+    }
+
+    @Test
+    public void thatAValueAFailingListenerRejectedIsDeliveredAgainOnTheNextChange() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 0);
+        AtomicBoolean failing = new AtomicBoolean(true);
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), update -> {
+            updates.add(update);
+            if (failing.getAndSet(false)) {
+                throw new IllegalStateException("Listener failed.");
+            }
+        });
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        publisher.publish(TOPIC);
+
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+        publisher.publish(TOPIC);
+        assertThat(updates.poll(100, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    public void thatClosedSubscriptionsGetNoMoreUpdates() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 0);
+        Subscription subscription = publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), updates::add);
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        subscription.close();
+        value.set(2);
+        publisher.publish(TOPIC);
+
+        assertThat(publisher.subscriptionCount(TOPIC), equalTo(0));
+        assertThat(updates.poll(100, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    public void thatClosingStopsUpdatesAndLeavesAGivenDispatcherRunning() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher(dispatcher, 0);
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), updates::add);
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        publisher.close();
+        value.set(2);
+        publisher.publish(TOPIC);
+
+        assertThat(updates.poll(100, TimeUnit.MILLISECONDS), nullValue());
+        assertThat(dispatcher.isShutdown(), equalTo(false));
+    }
+
+    @Test
+    public void thatClosingStopsTheDispatcherThreadThePublisherStarted() throws InterruptedException {
+        UpdatePublisher publisher = new UpdatePublisher();
+        AtomicReference<Thread> deliveringThread = new AtomicReference<>();
+        publisher.subscribe(TOPIC, () -> BigDecimal.valueOf(value.get()), update -> {
+            deliveringThread.set(Thread.currentThread());
+            updates.add(update);
+        });
+        assertThat(updates.poll(5, TimeUnit.SECONDS), equalTo(BigDecimal.valueOf(1)));
+
+        publisher.close();
+        deliveringThread.get().join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(deliveringThread.get().isAlive(), equalTo(false));
+    }
+}